@@ -0,0 +1,110 @@
+/**
+ * Precomputed per-square attack tables, built once at class load
+ */
+public final class Attacks {
+    public static final long[] KING = new long[Position.SQUARES];
+    public static final long[] KNIGHT = new long[Position.SQUARES];
+    public static final long[] ELEPHANT = new long[Position.SQUARES];
+    public static final long[] GENERAL = new long[Position.SQUARES];
+
+    // Pawn tables by original owner, since direction never changes with the controller
+    public static final long[][] PAWN_PUSH = new long[Position.PLAYER_COUNT][Position.SQUARES];
+    public static final long[][] PAWN_CAPTURES = new long[Position.PLAYER_COUNT][Position.SQUARES];
+    public static final long[][] PAWN_ATTACKERS = new long[Position.PLAYER_COUNT][Position.SQUARES]; // Reverse of PAWN_CAPTURES
+    public static final long[] PROMOTION = new long[Position.PLAYER_COUNT]; // Squares where an owner's pawns become GENERALs
+
+    // Rook geometry by square pair, empty unless the squares share a row or column
+    public static final long[][] BETWEEN = new long[Position.SQUARES][Position.SQUARES]; // Squares strictly between
+    public static final long[][] LINE = new long[Position.SQUARES][Position.SQUARES]; // Whole row or column through both
+
+    static {
+        int[][] king = {{-1,-1},{-1,0},{-1,1},{0,-1},{0,1},{1,-1},{1,0},{1,1}};
+        int[][] knight = {{-2,-1},{-2,1},{-1,-2},{-1,2},{1,-2},{1,2},{2,-1},{2,1}};
+        int[][] elephant = {{-2,-2},{2,2},{-2,2},{2,-2}};
+        int[][] general = {{-1,-1},{-1,1},{1,-1},{1,1}};
+
+        for (int sq = 0; sq < Position.SQUARES; sq++) {
+            KING[sq] = leaper(sq, king);
+            KNIGHT[sq] = leaper(sq, knight);
+            ELEPHANT[sq] = leaper(sq, elephant);
+            GENERAL[sq] = leaper(sq, general);
+
+            for (int other = 0; other < Position.SQUARES; other++) {
+                initLine(sq, other);
+            }
+
+            for (int owner = 0; owner < Position.PLAYER_COUNT; owner++) {
+                initPawn(owner, sq);
+                if (isPromotionSquare(Position.PLAYERS[owner], Position.row(sq), Position.col(sq))) {
+                    PROMOTION[owner] |= 1L << sq;
+                }
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    private static void initLine(int a, int b) {
+        if (a == b) return;
+        int ra = Position.row(a), ca = Position.col(a);
+        int rb = Position.row(b), cb = Position.col(b);
+        if (ra != rb && ca != cb) return;
+
+        int dr = Integer.signum(rb - ra);
+        int dc = Integer.signum(cb - ca);
+        for (int r = ra + dr, c = ca + dc; r != rb || c != cb; r += dr, c += dc) {
+            BETWEEN[a][b] |= 1L << Position.square(r, c);
+        }
+        for (int i = 0; i < Board.SIZE; i++) {
+            LINE[a][b] |= 1L << (ra == rb ? Position.square(ra, i) : Position.square(i, ca));
+        }
+    }
+
+    private static void initPawn(int owner, int sq) {
+        int r = Position.row(sq);
+        int c = Position.col(sq);
+        int[] forwardDelta = MoveValidator.getPawnForwardDelta(owner, r, c);
+        int dr = forwardDelta[0];
+        int dc = forwardDelta[1];
+
+        PAWN_PUSH[owner][sq] = leaper(sq, new int[][]{{dr, dc}});
+
+        // Captures are perpendicular to the forward direction
+        long captures = 0L;
+        if (dr == 0 && dc != 0) {
+            captures = leaper(sq, new int[][]{{1, dc}, {-1, dc}});
+        } else if (dc == 0 && dr != 0) {
+            captures = leaper(sq, new int[][]{{dr, 1}, {dr, -1}});
+        }
+        PAWN_CAPTURES[owner][sq] = captures;
+
+        while (captures != 0) {
+            int target = Long.numberOfTrailingZeros(captures);
+            captures &= captures - 1;
+            PAWN_ATTACKERS[owner][target] |= 1L << sq;
+        }
+    }
+
+    private static boolean isPromotionSquare(Player player, int r, int c) {
+        switch (player) {
+            case SUMMER: return r == 7 || c == 7;
+            case WINTER: return r == 0 || c == 0;
+            case FALL: return r == 0 || c == 7;
+            case SPRING: return r == 7 || c == 0;
+        }
+        return false;
+    }
+
+    private static long leaper(int sq, int[][] directions) {
+        long targets = 0L;
+        for (int[] dir : directions) {
+            int r = Position.row(sq) + dir[0];
+            int c = Position.col(sq) + dir[1];
+            if (r >= 0 && r < Board.SIZE && c >= 0 && c < Board.SIZE) {
+                targets |= 1L << Position.square(r, c);
+            }
+        }
+        return targets;
+    }
+}
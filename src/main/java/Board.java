@@ -1,6 +1,7 @@
 public class Board {
     public static final int SIZE = 8;
     private final Cell[][] cells = new Cell[SIZE][SIZE];
+    private final Position position = new Position(); // Bitboard mirror of the cells
 
     public Board() {
         initializeCells();
@@ -28,12 +29,14 @@ public class Board {
     public void setPiece(int row, int col, Piece piece) {
         if (isValidPosition(row, col)) {
             cells[row][col].setPiece(piece);
+            position.set(Position.square(row, col), piece != null ? Position.encode(piece) : Position.EMPTY);
         }
     }
 
     public void removePiece(int row, int col) {
         if (isValidPosition(row, col)) {
             cells[row][col].setPiece(null);
+            position.remove(Position.square(row, col));
         }
     }
 
@@ -44,6 +47,41 @@ public class Board {
         return null;
     }
 
+    /**
+     * Get the bitboard model kept in sync with the cells. Changes must go through
+     * setPiece/removePiece (call setPiece again after mutating a Piece in place), or be made on the
+     * position and followed by syncFromPosition.
+     */
+    public Position getPosition() {
+        return position;
+    }
+
+    /**
+     * Bring the cells in line with the bitboards after the position was changed directly, as
+     * RulesEngine does. Pieces are updated in place when the original owner still matches.
+     */
+    public void syncFromPosition() {
+        for (int sq = 0; sq < Position.SQUARES; sq++) {
+            Cell cell = cells[Position.row(sq)][Position.col(sq)];
+            int code = position.pieceAt(sq);
+            if (code == Position.EMPTY) {
+                cell.setPiece(null);
+                continue;
+            }
+
+            PieceType type = Position.TYPES[Position.typeOf(code)];
+            Player owner = Position.PLAYERS[Position.ownerOf(code)];
+            Player controller = Position.PLAYERS[Position.controllerOf(code)];
+            Piece piece = cell.getPiece();
+            if (piece == null || piece.getPlayer() != owner) {
+                piece = new Piece(type, owner);
+                cell.setPiece(piece);
+            }
+            piece.setType(type);
+            piece.setControllingPlayer(controller != owner ? controller : null);
+        }
+    }
+
     public Cell[][] getAllCells() {
         return cells;
     }
@@ -0,0 +1,68 @@
+/**
+ * Static evaluation producing one score per player, in centipawns from that player's point of view
+ */
+public final class Evaluation {
+    public static final int WIN = 100_000;
+    public static final int LOSS = -WIN;
+
+    /** Material value by PieceType ordinal: KING, ROOK, ELEPHANT, KNIGHT, PAWN, GENERAL */
+    public static final int[] PIECE_VALUES = {0, 500, 200, 300, 100, 250};
+
+    private Evaluation() {
+    }
+
+    /**
+     * Fill scores[player] for every player: material and piece-square value controlled (maintained
+     * incrementally by Position), LOSS once eliminated and WIN for the last player standing
+     */
+    public static void evaluate(Position position, int[] scores) {
+        for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+            if (position.isEliminated(p)) {
+                scores[p] = LOSS;
+            } else if (Rules.isGameOver(position)) {
+                scores[p] = WIN;
+            } else {
+                scores[p] = position.getScore(p);
+            }
+        }
+    }
+
+    /**
+     * Fill scores for a drawn position: the mean of the active players' scores for each of them,
+     * so max^n, which compares raw scores, weighs a draw against material on the same scale;
+     * LOSS for eliminated players
+     */
+    public static void draw(Position position, int[] scores) {
+        int sum = 0;
+        int active = 0;
+        for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+            if (!position.isEliminated(p)) {
+                sum += position.getScore(p);
+                active++;
+            }
+        }
+        int mean = active > 0 ? sum / active : 0;
+        for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+            scores[p] = position.isEliminated(p) ? LOSS : mean;
+        }
+    }
+
+    /**
+     * Collapse a score vector to one number for a player who assumes every opponent is against them:
+     * their own score minus the average of the active opponents
+     */
+    public static int paranoid(Position position, int[] scores, int player) {
+        if (position.isEliminated(player)) {
+            return LOSS;
+        }
+        int sum = 0;
+        int opponents = 0;
+        for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+            if (p != player && !position.isEliminated(p)) {
+                sum += scores[p];
+                opponents++;
+            }
+        }
+        return opponents == 0 ? WIN : scores[player] - sum / opponents;
+    }
+}
@@ -0,0 +1,306 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local client harness for GameServer: fills games from a few connections with random movers and
+ * checks every pushed move and its events against a replica RulesEngine of each game, then
+ * reports throughput and how the games ended. With --local the server runs in this process on a
+ * free port.
+ *
+ * Usage: java GameClient [--host H] [--port N] [--local] [--games N] [--connections N] [--seed S]
+ */
+public class GameClient implements Closeable {
+    private static final int OUTBOX_SIZE = 256 * 1024; // Room for a burst of joins
+
+    private final Socket socket;
+    private final GameProtocol.Outbox outbox = new GameProtocol.Outbox(OUTBOX_SIZE);
+    private final Map<Integer, ClientGame> games = new HashMap<>(); // Reader thread only
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private final Random random;
+    private final Results results;
+
+    public GameClient(String host, int port, long seed, Results results) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        random = new Random(seed);
+        this.results = results;
+    }
+
+    /**
+     * Ask for a seat in any open game
+     */
+    public void join() {
+        if (!outbox.join(0)) {
+            throw new IllegalStateException("Outbox full");
+        }
+    }
+
+    /**
+     * Reader thread: follow every game this connection sits in until the server disconnects
+     */
+    public void read() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 4096))) {
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+                int id = in.readInt();
+                switch (type) {
+                    case GameProtocol.JOINED:
+                        games.computeIfAbsent(id, key -> new ClientGame()).seats |= 1 << in.readUnsignedByte();
+                        break;
+                    case GameProtocol.START: {
+                        ClientGame game = games.get(id);
+                        game.rules.getHistory().setDrawRules(in.readUnsignedByte(), in.readUnsignedShort());
+                        game.started = true;
+                        play(id, game);
+                        break;
+                    }
+                    case GameProtocol.MOVED:
+                        moved(id, games.get(id), in.readUnsignedShort(), in.readUnsignedShort());
+                        break;
+                    case GameProtocol.OVER:
+                        over(id, games.remove(id), in.readByte(), in.readUnsignedByte());
+                        break;
+                    case GameProtocol.ERROR:
+                        results.error(id, in.readUnsignedByte());
+                        break;
+                    default:
+                        throw new IOException("Unknown message type " + type);
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // Disconnected
+        } catch (IOException e) {
+            System.err.println("Connection failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writer thread: send queued requests until closed
+     */
+    public void write() {
+        try {
+            outbox.drainTo(socket.getOutputStream());
+        } catch (IOException e) {
+            System.err.println("Write failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void moved(int id, ClientGame game, int move, int events) {
+        int local = game.rules.findMove(Move.from(move), Move.to(move));
+        if (local != move) {
+            results.mismatch(id, "move " + Move.toString(move) + " is " + Move.toString(local) + " here");
+            return;
+        }
+        int localEvents = game.rules.applyMove(local);
+        game.rules.compact();
+        game.plies++;
+        if (localEvents != events) {
+            results.mismatch(id, "events " + GameEvent.toString(events) + " are " + GameEvent.toString(localEvents) + " here");
+        }
+        play(id, game);
+    }
+
+    private void over(int id, ClientGame game, int winner, int reason) {
+        boolean agreed;
+        switch (reason) {
+            case GameProtocol.REASON_WIN:
+                agreed = game.rules.getWinner() == winner;
+                break;
+            case GameProtocol.REASON_REPETITION:
+                agreed = game.rules.getHistory().isRepetitionDraw();
+                break;
+            case GameProtocol.REASON_MOVE_LIMIT:
+                agreed = game.rules.getHistory().isMoveLimitDraw();
+                break;
+            case GameProtocol.REASON_NO_MOVES:
+                agreed = !game.rules.isGameOver() && !game.rules.hasLegalMove();
+                break;
+            default:
+                agreed = true;
+                break;
+        }
+        if (!agreed) {
+            results.mismatch(id, "ended by " + GameProtocol.reasonToString(reason) + " but not here");
+        }
+        results.finish(id, reason, game.plies);
+    }
+
+    /**
+     * Play a random legal move if it is the turn of one of this connection's seats
+     */
+    private void play(int id, ClientGame game) {
+        if (!game.started || (game.seats & (1 << game.rules.getSideToMove())) == 0) {
+            return;
+        }
+        int count = game.rules.generateLegalMoves(moves);
+        if (count > 0 && !outbox.move(id, moves[random.nextInt(count)])) {
+            results.mismatch(id, "outbox full");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        outbox.close();
+        socket.close();
+    }
+
+    /**
+     * This connection's replica of one game
+     */
+    private static class ClientGame {
+        private final RulesEngine rules;
+        private int seats; // Mask of the players this connection holds
+        private boolean started;
+        private int plies;
+
+        ClientGame() {
+            Position position = new Position(1);
+            new PieceSetup(position).setupInitialPieces();
+            rules = new RulesEngine(position);
+        }
+    }
+
+    /**
+     * Outcome of the whole run, shared by every connection; each game is counted once however
+     * many connections sit in it
+     */
+    public static class Results {
+        private final Set<Integer> finished = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch remaining;
+        private final long[] reasons = new long[GameProtocol.REASON_ABANDONED + 1];
+        private long plies;
+        private long mismatches;
+        private long errors;
+
+        public Results(int games) {
+            remaining = new CountDownLatch(games);
+        }
+
+        synchronized void finish(int id, int reason, int gamePlies) {
+            if (finished.add(id)) {
+                reasons[reason]++;
+                plies += gamePlies;
+                remaining.countDown();
+            }
+        }
+
+        synchronized void mismatch(int id, String message) {
+            if (mismatches++ < 10) {
+                System.err.println("Game " + id + ": " + message);
+            }
+        }
+
+        synchronized void error(int id, int error) {
+            if (errors++ < 10) {
+                System.err.println("Game " + id + ": " + GameProtocol.errorToString(error));
+            }
+        }
+
+        public boolean await(long timeoutMillis) throws InterruptedException {
+            return remaining.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        public synchronized boolean isClean() {
+            return mismatches == 0 && errors == 0;
+        }
+
+        public synchronized void print(long elapsedMillis) {
+            long games = finished.size();
+            System.out.printf("Games: %d in %d ms (%.0f games/s), %d plies (%.0f moves/s)%n", games, elapsedMillis,
+                    games * 1000.0 / Math.max(1, elapsedMillis), plies, plies * 1000.0 / Math.max(1, elapsedMillis));
+            System.out.print("Endings:");
+            for (int i = 0; i < reasons.length; i++) {
+                System.out.print(" " + GameProtocol.reasonToString(i) + " " + reasons[i]);
+            }
+            System.out.println();
+            System.out.println("Mismatches: " + mismatches + ", errors: " + errors);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String host = "localhost";
+        int port = GameServer.DEFAULT_PORT;
+        boolean local = false;
+        int games = 1000;
+        int connectionCount = 16;
+        long seed = 1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host": host = args[++i]; break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--local": local = true; break;
+                case "--games": games = Integer.parseInt(args[++i]); break;
+                case "--connections": connectionCount = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        GameServer server = null;
+        if (local) {
+            server = new GameServer(Math.max(games, GameServer.DEFAULT_MAX_GAMES),
+                    Math.max(games, GameServer.DEFAULT_MAX_SEATS), PositionHistory.DEFAULT_REPETITIONS,
+                    PositionHistory.DEFAULT_MOVE_LIMIT);
+            server.start(0);
+            host = "localhost";
+            port = server.getPort();
+        }
+
+        Results results = new Results(games);
+        List<GameClient> clients = new ArrayList<>();
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        long start = System.nanoTime();
+        long elapsed;
+        boolean done;
+        try {
+            for (int i = 0; i < connectionCount; i++) {
+                GameClient client = new GameClient(host, port, seed + i, results);
+                clients.add(client);
+                threads.execute(client::read);
+                threads.execute(client::write);
+            }
+            // Seats are handed out in join order, so spreading the joins mixes connections in every game
+            for (int i = 0; i < games * Position.PLAYER_COUNT; i++) {
+                clients.get(i % connectionCount).join();
+            }
+            done = results.await(TimeUnit.MINUTES.toMillis(10));
+            elapsed = (System.nanoTime() - start) / 1_000_000;
+        } finally {
+            for (GameClient client : clients) {
+                client.close();
+            }
+            threads.shutdown();
+            if (server != null) {
+                System.out.println("Server peak: " + server.getPeakGameCount() + " games at once");
+                server.close();
+            }
+        }
+
+        results.print(elapsed);
+        if (!done || !results.isClean()) {
+            System.err.println(done ? "Games disagreed with the replicas" : "Timed out");
+            System.exit(1);
+        }
+    }
+}
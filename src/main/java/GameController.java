@@ -1,49 +1,53 @@
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
-import java.util.HashSet;
 import java.util.function.Consumer;
 
 /**
- * GameController for local hot-seat play with strict turn order, check detection, and checkmate handling
+ * GameController for local hot-seat play: cell selection, Piece objects and UI callbacks on top
+ * of RulesEngine, which owns turn order, check detection and checkmate handling
  */
 public class GameController {
     private final Board board;
     private final MoveValidator moveValidator;
     private final PieceSetup pieceSetup;
-    private Player currentPlayer;
-    private final Set<Player> eliminatedPlayers; // Players who have been checkmated
-    private final Set<Player> activePlayers; // Players still in the game
+    private final RulesEngine rules;
     private Cell selectedCell;
     private Consumer<Player> statusCallback;
     private Consumer<String> gameStatusCallback; // For check/checkmate notifications
     private Runnable boardViewUpdateCallback;
     private Runnable pieceUpdateCallback;
+    private final int[] moveBuffer = new int[MoveGenerator.MAX_MOVES]; // Reused by every move generation call
+    private GameRecordWriter recordWriter;
+    private GameRecord record; // Game being recorded, null when not recording
+    private Tablebases tablebases;
 
     public GameController() {
         this.board = new Board();
         this.moveValidator = new MoveValidator(board);
         this.pieceSetup = new PieceSetup(board);
-        this.currentPlayer = Player.SPRING;
+        this.rules = new RulesEngine(board.getPosition());
         this.selectedCell = null;
-        this.eliminatedPlayers = new HashSet<>();
-        this.activePlayers = new HashSet<>();
-
-        // Initialize all players as active
-        for (Player player : Player.values()) {
-            activePlayers.add(player);
-        }
 
         // Setup initial pieces
         pieceSetup.setupInitialPieces();
+        rules.resetHistory();
     }
 
     public Board getBoard() {
         return board;
     }
 
+    /**
+     * Get the rules engine driving this game; moves applied to it directly must be followed by
+     * board.syncFromPosition()
+     */
+    public RulesEngine getRules() {
+        return rules;
+    }
+
     public Player getCurrentPlayer() {
-        return currentPlayer;
+        return Position.PLAYERS[rules.getSideToMove()];
     }
 
     public Cell getSelectedCell() {
@@ -66,13 +70,33 @@ public class GameController {
         this.pieceUpdateCallback = callback;
     }
 
-    public void handleCellClick(Cell cell) {
-        // Skip turn if current player is eliminated
-        if (eliminatedPlayers.contains(currentPlayer)) {
-            nextTurn();
-            return;
-        }
+    /**
+     * Record every game from the current position on to an archive, or stop recording with null.
+     * A game is appended when it ends, is reset or is replaced by loadSnapshot.
+     */
+    public void setRecordWriter(GameRecordWriter writer) {
+        finishRecord();
+        this.recordWriter = writer;
+        startRecord();
+    }
 
+    /**
+     * Use endgame tablebases to report forced results, or stop with null
+     */
+    public void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+
+    /**
+     * Tablebase result for the player to move
+     * @return Tablebase.WIN, LOSS or DRAW, or Tablebase.NONE if no table covers the position
+     */
+    public int probeTablebase() {
+        return tablebases != null && !isGameOver() ? tablebases.probe(board.getPosition()) : Tablebase.NONE;
+    }
+
+    public void handleCellClick(Cell cell) {
+        Player currentPlayer = getCurrentPlayer();
         if (selectedCell == null) {
             // No piece selected, try to select a piece
             if (cell.getPiece() != null && canPlayerControlPiece(currentPlayer, cell.getPiece())) {
@@ -84,14 +108,10 @@ public class GameController {
                 selectedCell = null;
             } else {
                 // Try to make a move
-                if (isLegalMoveWithCheckValidation(selectedCell, cell)) {
-                    makeMove(selectedCell, cell);
+                int move = findLegalMove(selectedCell, cell);
+                if (move != Move.NONE) {
+                    makeMove(selectedCell, cell, move);
                     selectedCell = null;
-
-                    // Check for check/checkmate after the move
-                    checkForCheckAndCheckmate();
-
-                    nextTurn();
                 } else {
                     // Select a different piece if it belongs to current player or is controlled by them
                     if (cell.getPiece() != null && canPlayerControlPiece(currentPlayer, cell.getPiece())) {
@@ -109,7 +129,7 @@ public class GameController {
         }
 
         if (statusCallback != null) {
-            statusCallback.accept(currentPlayer);
+            statusCallback.accept(getCurrentPlayer());
         }
     }
 
@@ -122,118 +142,117 @@ public class GameController {
         }
 
         // Check if this piece belonged to an eliminated player that this player now controls
-        return eliminatedPlayers.contains(piece.getPlayer()) &&
+        return isPlayerEliminated(piece.getPlayer()) &&
                 piece.getControllingPlayer() != null &&
                 piece.getControllingPlayer() == player;
     }
 
     public List<Cell> getLegalMoves(Cell fromCell) {
-        List<Cell> baseMoves = moveValidator.getLegalMoves(fromCell);
-        List<Cell> legalMoves = new ArrayList<>();
-
-        // Filter out moves that would put the player in check
-        for (Cell toCell : baseMoves) {
-            if (isLegalMoveWithCheckValidation(fromCell, toCell)) {
-                legalMoves.add(toCell);
-            }
+        Position position = board.getPosition();
+        if (fromCell.isEmpty()) {
+            return new ArrayList<>();
         }
 
+        // Only moves that don't leave the player in check
+        int count = MoveGenerator.generateLegal(position, Position.square(fromCell.getRow(), fromCell.getCol()), moveBuffer, 0);
+
+        List<Cell> legalMoves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int to = Move.to(moveBuffer[i]);
+            legalMoves.add(board.getCell(Position.row(to), Position.col(to)));
+        }
         return legalMoves;
     }
 
     /**
-     * Check if a move is legal considering check rules
+     * Get the legal move between two cells for the current player, considering check rules
+     * @return the encoded move, or Move.NONE if it is not legal
      */
-    private boolean isLegalMoveWithCheckValidation(Cell from, Cell to) {
+    private int findLegalMove(Cell from, Cell to) {
         if (!moveValidator.isLegalMove(from, to)) {
-            return false;
+            return Move.NONE;
         }
+        return rules.findMove(Position.square(from.getRow(), from.getCol()), Position.square(to.getRow(), to.getCol()));
+    }
 
-        // Simulate the move to check if it leaves the player in check
-        Piece movingPiece = from.getPiece();
-        Piece capturedPiece = to.getPiece();
+    private void makeMove(Cell from, Cell to, int move) {
+        Player mover = getCurrentPlayer();
 
-        // Make temporary move
-        to.setPiece(movingPiece);
+        // Carry the Piece object along so the view keeps it; promotion and transfers are synced below
+        to.setPiece(from.getPiece());
         from.setPiece(null);
+        int events = rules.applyMove(move);
+        board.syncFromPosition();
+        if (record != null) {
+            record.addMove(move);
+        }
 
-        // Check if the current player's king is in check after this move
-        boolean wouldBeInCheck = isPlayerInCheck(getEffectivePlayer(movingPiece));
-
-        // Restore board state
-        from.setPiece(movingPiece);
-        to.setPiece(capturedPiece);
+        // Update piece display
+        if (pieceUpdateCallback != null) {
+            pieceUpdateCallback.run();
+        }
 
-        return !wouldBeInCheck;
+        handleEvents(events, mover);
+        if (GameEvent.eliminated(events) == 0 && GameEvent.checked(events) == 0) {
+            reportTablebaseResult(); // Don't hide check and checkmate messages
+        }
+        if (statusCallback != null) {
+            statusCallback.accept(getCurrentPlayer());
+        }
     }
 
     /**
-     * Get the effective controlling player for a piece
+     * Report check, checkmate and game over for the move just made, in turn order after the mover
      */
-    private Player getEffectivePlayer(Piece piece) {
-        if (piece.getControllingPlayer() != null) {
-            return piece.getControllingPlayer();
-        }
-        return piece.getPlayer();
-    }
-
-    private void makeMove(Cell from, Cell to) {
-        Piece piece = from.getPiece();
-        if (piece == null) return;
-
-        // Make the move
-        to.setPiece(piece);
-        from.setPiece(null);
-
-        // Check for pawn promotion
-        if (piece.getType() == PieceType.PAWN && isPromotionSquare(piece.getPlayer(), to)) {
-            piece.setType(PieceType.GENERAL);
+    private void handleEvents(int events, Player mover) {
+        for (int i = 1; i < Position.PLAYER_COUNT; i++) {
+            int player = (mover.ordinal() + i) % Position.PLAYER_COUNT;
+            if ((GameEvent.eliminated(events) & (1 << player)) != 0) {
+                handleCheckmate(Position.PLAYERS[player], mover, (GameEvent.checkmated(events) & (1 << player)) != 0);
+            } else if ((GameEvent.checked(events) & (1 << player)) != 0) {
+                if (gameStatusCallback != null) {
+                    gameStatusCallback.accept(Position.PLAYERS[player] + " is in check!");
+                }
+            }
         }
 
-        // Update piece display
-        if (pieceUpdateCallback != null) {
-            pieceUpdateCallback.run();
+        if (GameEvent.isGameOver(events)) {
+            handleGameOver(events);
         }
     }
 
     /**
-     * Check if a player's king is in check
+     * Tell the players when the tablebases know how the game ends
      */
-    public boolean isPlayerInCheck(Player player) {
-        Cell kingCell = findKing(player);
-        if (kingCell == null) {
-            return false; // No king, can't be in check
+    private void reportTablebaseResult() {
+        int result = probeTablebase();
+        if (result == Tablebase.NONE || gameStatusCallback == null) {
+            return;
         }
+        Player side = getCurrentPlayer();
+        if (result == Tablebase.DRAW) {
+            gameStatusCallback.accept("Neither player can force a win");
+        } else {
+            int winner = result == Tablebase.WIN ? side.ordinal() : otherActivePlayer(side.ordinal());
+            gameStatusCallback.accept(Position.PLAYERS[winner] + " can force a win");
+        }
+    }
 
-        // Check if any opponent piece can attack the king
-        for (int r = 0; r < Board.SIZE; r++) {
-            for (int c = 0; c < Board.SIZE; c++) {
-                Piece piece = board.getPiece(r, c);
-                if (piece != null && getEffectivePlayer(piece) != player) {
-                    List<Cell> moves = moveValidator.getLegalMoves(board.getCell(r, c));
-                    if (moves.contains(kingCell)) {
-                        return true;
-                    }
-                }
+    private int otherActivePlayer(int player) {
+        for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+            if (p != player && !board.getPosition().isEliminated(p)) {
+                return p;
             }
         }
-        return false;
+        return player;
     }
 
     /**
-     * Find a player's king on the board
+     * Check if a player's king is in check
      */
-    private Cell findKing(Player player) {
-        for (int r = 0; r < Board.SIZE; r++) {
-            for (int c = 0; c < Board.SIZE; c++) {
-                Piece piece = board.getPiece(r, c);
-                if (piece != null && piece.getType() == PieceType.KING &&
-                        getEffectivePlayer(piece) == player) {
-                    return board.getCell(r, c);
-                }
-            }
-        }
-        return null;
+    public boolean isPlayerInCheck(Player player) {
+        // Check if any opponent piece attacks the king square; no king means no check
+        return MoveGenerator.isInCheck(board.getPosition(), player.ordinal());
     }
 
     /**
@@ -245,22 +264,7 @@ public class GameController {
         }
 
         // Try all possible moves to see if any can get out of check
-        for (int r = 0; r < Board.SIZE; r++) {
-            for (int c = 0; c < Board.SIZE; c++) {
-                Piece piece = board.getPiece(r, c);
-                if (piece != null && getEffectivePlayer(piece) == player) {
-                    Cell fromCell = board.getCell(r, c);
-                    List<Cell> possibleMoves = moveValidator.getLegalMoves(fromCell);
-
-                    for (Cell toCell : possibleMoves) {
-                        if (isLegalMoveWithCheckValidation(fromCell, toCell)) {
-                            return false; // Found a legal move, not checkmate
-                        }
-                    }
-                }
-            }
-        }
-        return true; // No legal moves found, it's checkmate
+        return !MoveGenerator.hasLegalMove(board.getPosition(), player.ordinal(), moveBuffer);
     }
 
     /**
@@ -271,137 +275,83 @@ public class GameController {
             return false;
         }
 
-        // Try all possible moves to see if any can get out of check
-        for (int r = 0; r < Board.SIZE; r++) {
-            for (int c = 0; c < Board.SIZE; c++) {
-                Piece piece = board.getPiece(r, c);
-                if (piece != null && getEffectivePlayer(piece) == player) {
-                    Cell fromCell = board.getCell(r, c);
-                    List<Cell> possibleMoves = moveValidator.getLegalMoves(fromCell);
-
-                    for (Cell toCell : possibleMoves) {
-                        if (isLegalMoveWithCheckValidation(fromCell, toCell)) {
-                            return false; // Found a legal move, not stalemate
-                        }
-                    }
-                }
-            }
-        }
-        return true; // No legal moves found, it's stalemate
+        // No legal moves while not in check is stalemate
+        return !MoveGenerator.hasLegalMove(board.getPosition(), player.ordinal(), moveBuffer);
     }
 
     /**
-     * Check for check and checkmate conditions after a move
+     * Report a checkmate (or stalemate); the rules engine has already eliminated the player and
+     * transferred their pieces
      */
-    private void checkForCheckAndCheckmate() {
-        List<Player> playersToCheck = new ArrayList<>(activePlayers);
-        playersToCheck.remove(currentPlayer); // Don't check the player who just moved
-
-        for (Player player : playersToCheck) {
-            if (eliminatedPlayers.contains(player)) {
-                continue;
-            }
-
-            if (isPlayerInCheckmate(player) || isPlayerInStalemate(player)) {
-                handleCheckmate(player, currentPlayer);
-            } else if (isPlayerInCheck(player)) {
-                if (gameStatusCallback != null) {
-                    gameStatusCallback.accept(player + " is in check!");
-                }
-            }
+    private void handleCheckmate(Player checkmatedPlayer, Player victor, boolean inCheck) {
+        if (record != null) {
+            record.addElimination(checkmatedPlayer.ordinal(), victor.ordinal(), inCheck);
         }
-
-        // Check for game over
-        if (getActivePlayerCount() <= 1) {
-            handleGameOver();
+        if (gameStatusCallback != null) {
+            gameStatusCallback.accept(victor + " checkmates " + checkmatedPlayer + "! " +
+                    victor + " now controls " + checkmatedPlayer + "'s pieces.");
         }
     }
 
     /**
-     * Handle checkmate: eliminate player and transfer pieces
+     * Handle game over condition
      */
-    private void handleCheckmate(Player checkmatedPlayer, Player victor) {
-        // Remove player from game entirely
-        eliminatedPlayers.add(checkmatedPlayer);
-        activePlayers.remove(checkmatedPlayer);
-
-        // Remove the king from the board
-        Cell kingCell = findKing(checkmatedPlayer);
-        if (kingCell != null) {
-            kingCell.setPiece(null);
-        }
-
-        // Transfer remaining pieces to the victor
-        for (int r = 0; r < Board.SIZE; r++) {
-            for (int c = 0; c < Board.SIZE; c++) {
-                Piece piece = board.getPiece(r, c);
-                if (piece != null && piece.getPlayer() == checkmatedPlayer) {
-                    piece.setControllingPlayer(victor);
-                    // Pawns keep their original movement direction
-                }
+    private void handleGameOver(int events) {
+        int winner = rules.getWinner();
+        if (record != null && (winner >= 0 || GameEvent.isDraw(events))) {
+            if (winner >= 0) {
+                record.addGameOver(winner);
+            } else {
+                record.addDraw();
             }
+            finishRecord();
         }
-
-        if (gameStatusCallback != null) {
-            gameStatusCallback.accept(victor + " checkmates " + checkmatedPlayer + "! " +
-                    victor + " now controls " + checkmatedPlayer + "'s pieces.");
+        if (gameStatusCallback == null) {
+            return;
+        }
+        if (winner >= 0) {
+            gameStatusCallback.accept("Game Over! " + Position.PLAYERS[winner] + " wins!");
+        } else if ((events & GameEvent.DRAW_REPETITION) != 0) {
+            gameStatusCallback.accept("Game Over! Drawn by repetition - no one wins!");
+        } else if ((events & GameEvent.DRAW_MOVE_LIMIT) != 0) {
+            gameStatusCallback.accept("Game Over! Drawn after " + rules.getHistory().getMoveLimit()
+                    + " moves without a capture - no one wins!");
         }
     }
 
+    private void startRecord() {
+        record = recordWriter != null ? new GameRecord(System.currentTimeMillis(), getSnapshot()) : null;
+    }
+
     /**
-     * Handle game over condition
+     * Append the game recorded so far, if it has any moves
      */
-    private void handleGameOver() {
-        Player winner = null;
-        for (Player player : activePlayers) {
-            if (!eliminatedPlayers.contains(player)) {
-                winner = player;
-                break;
-            }
+    private void finishRecord() {
+        if (record == null || record.getEntryCount() == 0) {
+            return;
         }
-
-        if (winner != null && gameStatusCallback != null) {
-            gameStatusCallback.accept("Game Over! " + winner + " wins!");
+        try {
+            recordWriter.append(record);
+            recordWriter.flush();
+        } catch (IOException e) {
+            System.err.println("Could not record game: " + e.getMessage());
+            recordWriter = null;
         }
+        record = null;
     }
 
     /**
      * Get the number of active players
      */
     public int getActivePlayerCount() {
-        return (int) activePlayers.stream().filter(p -> !eliminatedPlayers.contains(p)).count();
+        return board.getPosition().getActivePlayerCount();
     }
 
     /**
      * Check if a player is eliminated
      */
     public boolean isPlayerEliminated(Player player) {
-        return eliminatedPlayers.contains(player);
-    }
-
-    private boolean isPromotionSquare(Player player, Cell cell) {
-        int r = cell.getRow();
-        int c = cell.getCol();
-        switch (player) {
-            case SUMMER: return r == 7 || c == 7;
-            case WINTER: return r == 0 || c == 0;
-            case FALL: return r == 0 || c == 7;
-            case SPRING: return r == 7 || c == 0;
-        }
-        return false;
-    }
-
-    /**
-     * Move to next turn, skipping eliminated players
-     */
-    private void nextTurn() {
-        do {
-            currentPlayer = currentPlayer.next();
-        } while (eliminatedPlayers.contains(currentPlayer) && getActivePlayerCount() > 1);
-
-        if (statusCallback != null) {
-            statusCallback.accept(currentPlayer);
-        }
+        return board.getPosition().isEliminated(player.ordinal());
     }
 
     public void resetGame() {
@@ -413,16 +363,14 @@ public class GameController {
         }
 
         // Reset state
+        finishRecord();
         selectedCell = null;
-        currentPlayer = Player.SPRING;
-        eliminatedPlayers.clear();
-        activePlayers.clear();
-        for (Player player : Player.values()) {
-            activePlayers.add(player);
-        }
+        board.getPosition().clear();
 
         // Setup initial pieces
         pieceSetup.setupInitialPieces();
+        rules.resetHistory();
+        startRecord();
 
         // Notify callbacks
         if (boardViewUpdateCallback != null) {
@@ -432,11 +380,39 @@ public class GameController {
             pieceUpdateCallback.run();
         }
         if (statusCallback != null) {
-            statusCallback.accept(currentPlayer);
+            statusCallback.accept(getCurrentPlayer());
         }
     }
 
     public boolean isGameOver() {
-        return getActivePlayerCount() <= 1;
+        return rules.isGameOver();
+    }
+
+    /**
+     * Capture the current game state as an immutable value
+     */
+    public PositionSnapshot getSnapshot() {
+        return PositionSnapshot.of(board.getPosition());
+    }
+
+    /**
+     * Replace the game state with a snapshot, clearing any selection
+     */
+    public void loadSnapshot(PositionSnapshot snapshot) {
+        finishRecord();
+        selectedCell = null;
+        snapshot.restore(board);
+        rules.resetHistory();
+        startRecord();
+
+        if (boardViewUpdateCallback != null) {
+            boardViewUpdateCallback.run();
+        }
+        if (pieceUpdateCallback != null) {
+            pieceUpdateCallback.run();
+        }
+        if (statusCallback != null) {
+            statusCallback.accept(getCurrentPlayer());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,92 @@
+/**
+ * Events produced by one move, packed into an int so applying a move allocates nothing.
+ * Player sets are 4-bit masks of player ordinals:
+ *
+ *  bits 0-3   players left in check
+ *  bits 4-7   players checkmated (eliminated while in check)
+ *  bits 8-11  players stalemated (eliminated without being in check)
+ *  bit 12     an army was transferred to the mover
+ *  bit 13     the game is over: one player is left, or it is drawn
+ *  bit 14     drawn by repetition
+ *  bit 15     drawn by the move limit without captures, promotions or eliminations
+ */
+public final class GameEvent {
+    public static final int NONE = 0;
+    public static final int TRANSFER = 1 << 12;
+    public static final int GAME_OVER = 1 << 13;
+    public static final int DRAW_REPETITION = 1 << 14;
+    public static final int DRAW_MOVE_LIMIT = 1 << 15;
+
+    private static final int CHECK_SHIFT = 0;
+    private static final int CHECKMATE_SHIFT = 4;
+    private static final int STALEMATE_SHIFT = 8;
+
+    private GameEvent() {
+    }
+
+    public static int check(int player) {
+        return 1 << (CHECK_SHIFT + player);
+    }
+
+    public static int checkmate(int player) {
+        return 1 << (CHECKMATE_SHIFT + player);
+    }
+
+    public static int stalemate(int player) {
+        return 1 << (STALEMATE_SHIFT + player);
+    }
+
+    /**
+     * @return mask of the players left in check
+     */
+    public static int checked(int events) {
+        return (events >>> CHECK_SHIFT) & Position.ALL_PLAYERS;
+    }
+
+    public static int checkmated(int events) {
+        return (events >>> CHECKMATE_SHIFT) & Position.ALL_PLAYERS;
+    }
+
+    public static int stalemated(int events) {
+        return (events >>> STALEMATE_SHIFT) & Position.ALL_PLAYERS;
+    }
+
+    /**
+     * @return mask of every player eliminated by the move
+     */
+    public static int eliminated(int events) {
+        return checkmated(events) | stalemated(events);
+    }
+
+    public static boolean isTransfer(int events) {
+        return (events & TRANSFER) != 0;
+    }
+
+    public static boolean isGameOver(int events) {
+        return (events & GAME_OVER) != 0;
+    }
+
+    public static boolean isDraw(int events) {
+        return (events & (DRAW_REPETITION | DRAW_MOVE_LIMIT)) != 0;
+    }
+
+    public static String toString(int events) {
+        StringBuilder text = new StringBuilder();
+        appendPlayers(text, "check", checked(events));
+        appendPlayers(text, "checkmate", checkmated(events));
+        appendPlayers(text, "stalemate", stalemated(events));
+        if (isTransfer(events)) text.append(text.length() > 0 ? " " : "").append("transfer");
+        if ((events & DRAW_REPETITION) != 0) text.append(text.length() > 0 ? " " : "").append("draw-repetition");
+        if ((events & DRAW_MOVE_LIMIT) != 0) text.append(text.length() > 0 ? " " : "").append("draw-move-limit");
+        if (isGameOver(events)) text.append(text.length() > 0 ? " " : "").append("game-over");
+        return text.length() > 0 ? text.toString() : "none";
+    }
+
+    private static void appendPlayers(StringBuilder text, String label, int players) {
+        for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+            if ((players & (1 << p)) != 0) {
+                text.append(text.length() > 0 ? " " : "").append(label).append(' ').append(Position.PLAYERS[p]);
+            }
+        }
+    }
+}
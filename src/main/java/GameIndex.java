@@ -0,0 +1,329 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read side of the analysis index built by GameIndexer over a game record archive. Every table is
+ * memory-mapped and answered in place: a lookup is a binary search over sorted fixed-size entries,
+ * so the index never has to be loaded onto the heap.
+ *
+ * File layout, all big-endian:
+ *
+ *  header        int MAGIC, int opening plies, then long counts of games, positions, openings
+ *                and eliminations
+ *  games         GAME_SIZE bytes per game in archive order: long archive offset, int plies,
+ *                byte winner (DRAW if drawn, -1 if unfinished), byte elimination count, byte losers and byte
+ *                victors in elimination order (2 bits each, first in the low bits)
+ *  positions     key = Zobrist key, value = game << 24 | ply, for every position reached
+ *  openings      key = prefix key of the first n moves for n up to the opening plies, value = game
+ *  eliminations  key = checkmate << 36 | victor << 34 | loser << 32 | ply of the eliminating
+ *                move (checkmate is 1, stalemate 0), value = game << 24 | ply
+ *
+ * The last three tables hold ENTRY_SIZE byte key/value pairs sorted by key then value. Tables are
+ * mapped in segments of up to 1 GB, like GameRecordReader's windows, so their size is not limited
+ * by what one buffer can address.
+ */
+public class GameIndex implements Closeable {
+    public static final int MAGIC = 0x46534749; // "FSGI"
+    public static final int HEADER_SIZE = 2 * Integer.BYTES + 4 * Long.BYTES;
+    public static final int GAME_SIZE = 16;
+    public static final int ENTRY_SIZE = 2 * Long.BYTES;
+    public static final int DRAW = GameRecordReader.DRAW; // Winner of a drawn game
+
+    private final FileChannel channel;
+    private final int openingPlies;
+    private final long gameCount;
+    private final Table games;
+    private final Table positions;
+    private final Table openings;
+    private final Table eliminations;
+
+    public GameIndex(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("Not a game index: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a game index: " + file);
+            }
+            openingPlies = header.getInt();
+            gameCount = header.getLong();
+            long positionCount = header.getLong();
+            long openingCount = header.getLong();
+            long eliminationCount = header.getLong();
+            long entryCount = positionCount + openingCount + eliminationCount;
+            // Counts are checked one by one first so a corrupt header cannot overflow the total
+            long maxEntries = (size - HEADER_SIZE) / ENTRY_SIZE;
+            if (gameCount < 0 || positionCount < 0 || openingCount < 0 || eliminationCount < 0
+                    || gameCount > maxEntries || positionCount > maxEntries || openingCount > maxEntries
+                    || eliminationCount > maxEntries
+                    || HEADER_SIZE + gameCount * GAME_SIZE + entryCount * ENTRY_SIZE > size) {
+                throw new IOException("Game index " + file + " of " + size + " bytes is truncated or corrupt");
+            }
+
+            long offset = HEADER_SIZE;
+            games = new Table(channel, offset, gameCount);
+            offset += gameCount * GAME_SIZE;
+            positions = new Table(channel, offset, positionCount);
+            offset += positionCount * ENTRY_SIZE;
+            openings = new Table(channel, offset, openingCount);
+            offset += openingCount * ENTRY_SIZE;
+            eliminations = new Table(channel, offset, eliminationCount);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Key of an opening before any move from a start position
+     */
+    public static long openingKey(long startKey) {
+        return Zobrist.mix(startKey);
+    }
+
+    /**
+     * Extend an opening key by one move. Only the squares count, so the key of a move sequence
+     * does not depend on how its flags were recorded.
+     */
+    public static long openingKey(long prefix, int move) {
+        return Zobrist.mix(prefix ^ (Move.squares(move) + 1) * 0x9E3779B97F4A7C15L);
+    }
+
+    public int getOpeningPlies() {
+        return openingPlies;
+    }
+
+    public long getGameCount() {
+        return gameCount;
+    }
+
+    /**
+     * Archive offset of a game's record, for GameRecordReader.seek
+     */
+    public long getArchiveOffset(long game) {
+        return games.getLong(gameAt(game), 0);
+    }
+
+    public int getPlies(long game) {
+        return games.getInt(gameAt(game), 8);
+    }
+
+    /**
+     * @return the last player standing, DRAW if the game was drawn, or -1 if it was not finished
+     */
+    public int getWinner(long game) {
+        return games.get(gameAt(game), 12);
+    }
+
+    public int getEliminationCount(long game) {
+        return games.get(gameAt(game), 13);
+    }
+
+    /**
+     * @return the player eliminated at the given place (0 for the first to go)
+     */
+    public int getEliminated(long game, int order) {
+        return (games.get(gameAt(game), 14) >>> (2 * order)) & 3;
+    }
+
+    public int getEliminatedBy(long game, int order) {
+        return (games.get(gameAt(game), 15) >>> (2 * order)) & 3;
+    }
+
+    private long gameAt(long game) {
+        if (game < 0 || game >= gameCount) {
+            throw new IndexOutOfBoundsException("Game " + game + " of " + gameCount);
+        }
+        return game;
+    }
+
+    /**
+     * Number of times a position was reached across all games
+     */
+    public long countPosition(long key) {
+        return upperBound(positions, key) - lowerBound(positions, key);
+    }
+
+    /**
+     * Every occurrence of a position as game << 24 | ply, in game order
+     */
+    public long[] findPosition(long key) {
+        return values(positions, lowerBound(positions, key), upperBound(positions, key));
+    }
+
+    /**
+     * Games that started with the given moves, in game order
+     * @throws IllegalArgumentException if more moves are given than the index covers
+     */
+    public long[] findOpening(long startKey, int[] moves, int count) {
+        if (count > openingPlies) {
+            throw new IllegalArgumentException("Index covers openings of up to " + openingPlies + " plies");
+        }
+        long key = openingKey(startKey);
+        for (int i = 0; i < count; i++) {
+            key = openingKey(key, moves[i]);
+        }
+        return values(openings, lowerBound(openings, key), upperBound(openings, key));
+    }
+
+    /**
+     * Results of the games that started with the given moves
+     */
+    public OpeningStatistics getOpeningStatistics(long startKey, int[] moves, int count) {
+        OpeningStatistics statistics = new OpeningStatistics();
+        for (long game : findOpening(startKey, moves, count)) {
+            statistics.add(this, game);
+        }
+        return statistics;
+    }
+
+    /**
+     * Checkmates (or stalemates) of one player by another made on plies fromPly to toPly, as
+     * game << 24 | ply ordered by ply
+     */
+    public long[] findEliminations(int victor, int loser, boolean checkmate, int fromPly, int toPly) {
+        long kind = (checkmate ? 1L << 36 : 0) | (long) victor << 34 | (long) loser << 32;
+        long from = lowerBound(eliminations, kind | fromPly);
+        long to = upperBound(eliminations, kind | toPly);
+        return values(eliminations, from, Math.max(from, to));
+    }
+
+    /**
+     * Index of the first entry with a key not below the given one
+     */
+    private static long lowerBound(Table table, long key) {
+        long low = 0;
+        long high = table.size();
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(table.getLong(mid, 0), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Index of the first entry with a key above the given one
+     */
+    private static long upperBound(Table table, long key) {
+        long low = 0;
+        long high = table.size();
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(table.getLong(mid, 0), key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long[] values(Table table, long from, long to) {
+        long[] values = new long[Math.toIntExact(to - from)];
+        for (long i = from; i < to; i++) {
+            values[(int) (i - from)] = table.getLong(i, Long.BYTES);
+        }
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * One table of 16-byte records (GAME_SIZE and ENTRY_SIZE alike) mapped in segments, so a
+     * record never straddles two buffers
+     */
+    private static class Table {
+        private static final int SEGMENT_SHIFT = 26; // 64M records, 1 GB per mapping
+        private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+        private final MappedByteBuffer[] segments;
+        private final long size;
+
+        Table(FileChannel channel, long offset, long size) throws IOException {
+            this.size = size;
+            segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long first = (long) i << SEGMENT_SHIFT;
+                long records = Math.min(SEGMENT_MASK + 1, size - first);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + first * ENTRY_SIZE, records * ENTRY_SIZE);
+            }
+        }
+
+        long size() {
+            return size;
+        }
+
+        long getLong(long index, int field) {
+            return segments[(int) (index >>> SEGMENT_SHIFT)].getLong((int) (index & SEGMENT_MASK) * ENTRY_SIZE + field);
+        }
+
+        int getInt(long index, int field) {
+            return segments[(int) (index >>> SEGMENT_SHIFT)].getInt((int) (index & SEGMENT_MASK) * ENTRY_SIZE + field);
+        }
+
+        byte get(long index, int field) {
+            return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK) * ENTRY_SIZE + field);
+        }
+    }
+
+    /**
+     * How a set of games ended: wins and first eliminations by player, draws and unfinished games
+     */
+    public static class OpeningStatistics {
+        private final int[] wins = new int[Position.PLAYER_COUNT];
+        private final int[] eliminatedFirst = new int[Position.PLAYER_COUNT];
+        private int games;
+        private int draws;
+        private int unfinished;
+
+        void add(GameIndex index, long game) {
+            games++;
+            int winner = index.getWinner(game);
+            if (winner >= 0) {
+                wins[winner]++;
+            } else if (winner == DRAW) {
+                draws++;
+            } else {
+                unfinished++;
+            }
+            if (index.getEliminationCount(game) > 0) {
+                eliminatedFirst[index.getEliminated(game, 0)]++;
+            }
+        }
+
+        public int getGames() {
+            return games;
+        }
+
+        public int getDraws() {
+            return draws;
+        }
+
+        public int getUnfinished() {
+            return unfinished;
+        }
+
+        public int getWins(int player) {
+            return wins[player];
+        }
+
+        public int getEliminatedFirst(int player) {
+            return eliminatedFirst[player];
+        }
+    }
+}
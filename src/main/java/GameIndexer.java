@@ -0,0 +1,586 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Builds a GameIndex from a game record archive. Each game is replayed through RulesEngine from its
+ * recorded start position, so positions, results and eliminations come from the rules rather than
+ * from whatever the recorder wrote; a game with an illegal move is indexed up to that move. Table
+ * entries (16 bytes per position reached) are sorted in runs that spill to temporary files and
+ * are merged as the index is written, so only the games table (16 bytes per game) stays on the
+ * heap.
+ *
+ * Usage: java GameIndexer build ARCHIVE INDEX [--opening-plies N]
+ *        java GameIndexer opening INDEX [MOVE...]         e.g. g6-g5 b8-c6
+ *        java GameIndexer position INDEX TEXT             PositionCodec text form
+ *        java GameIndexer eliminations INDEX VICTOR LOSER [--stalemate]
+ */
+public class GameIndexer implements Closeable {
+    public static final int DEFAULT_OPENING_PLIES = 12;
+    public static final int MAX_PLY = (1 << 24) - 1; // Plies past this are not indexed
+    public static final int MAX_GAMES = 1 << 29; // The games table is kept in one array
+
+    private final int openingPlies;
+    private final RulesEngine rules = GameRecordReader.newReplay();
+    private final Position position = rules.getPosition();
+
+    // Per game: archive offset, then plies << 32 | winner << 24 | elimination count << 16 | losers << 8 | victors
+    private long[] games = new long[2 * 1024];
+    private final EntryList positions = new EntryList();
+    private final EntryList openings = new EntryList();
+    private final EntryList eliminations = new EntryList();
+    private int gameCount;
+    private int illegalGames;
+
+    public GameIndexer(int openingPlies) {
+        this.openingPlies = openingPlies;
+    }
+
+    public int getGameCount() {
+        return gameCount;
+    }
+
+    /**
+     * Number of games cut short by a move the rules do not allow
+     */
+    public int getIllegalGames() {
+        return illegalGames;
+    }
+
+    /**
+     * Replay every complete record of an archive
+     */
+    public void addArchive(GameRecordReader reader) throws IOException {
+        while (reader.next()) {
+            addGame(reader);
+        }
+    }
+
+    private void addGame(GameRecordReader reader) throws IOException {
+        if (gameCount == MAX_GAMES) {
+            throw new IllegalStateException("An index holds at most " + MAX_GAMES + " games");
+        }
+        long game = gameCount++;
+        int winner = reader.getResult(); // As recorded, since the replay never ends in a draw
+        reader.startReplay(rules);
+
+        long opening = GameIndex.openingKey(position.getKey());
+        openings.add(opening, game);
+        positions.add(position.getKey(), game << 24);
+
+        int plies = 0;
+        int losers = 0;
+        int victors = 0;
+        int eliminationCount = 0;
+        for (int i = 0; i < reader.getEntryCount() && plies < MAX_PLY; i++) {
+            int entry = reader.getEntry(i);
+            if (!GameRecord.isMove(entry)) {
+                continue; // Events are recomputed by the replay
+            }
+            int move = rules.findMove(Move.from(entry), Move.to(entry));
+            if (move == Move.NONE) {
+                illegalGames++;
+                break;
+            }
+
+            int mover = position.getSideToMove();
+            int events = rules.applyMove(move);
+            plies++;
+            if (plies <= openingPlies) {
+                opening = GameIndex.openingKey(opening, move);
+                openings.add(opening, game);
+            }
+            positions.add(position.getKey(), game << 24 | plies);
+
+            // Eliminations happen in turn order after the mover
+            for (int j = 1; j < Position.PLAYER_COUNT; j++) {
+                int player = (mover + j) % Position.PLAYER_COUNT;
+                if ((GameEvent.eliminated(events) & (1 << player)) == 0) continue;
+
+                long checkmate = (GameEvent.checkmated(events) & (1 << player)) != 0 ? 1L << 36 : 0;
+                eliminations.add(checkmate | (long) mover << 34 | (long) player << 32 | plies, game << 24 | plies);
+                losers |= player << (2 * eliminationCount);
+                victors |= mover << (2 * eliminationCount);
+                eliminationCount++;
+            }
+        }
+
+        if (2 * gameCount > games.length) {
+            games = Arrays.copyOf(games, games.length * 2);
+        }
+        games[(int) (2 * game)] = reader.getOffset();
+        games[(int) (2 * game + 1)] = (long) plies << 32 | (long) (winner & 0xFF) << 24
+                | eliminationCount << 16 | losers << 8 | victors;
+    }
+
+    /**
+     * Sort the tables and write the index file, replacing any existing one; no games can be added
+     * afterwards
+     */
+    public void write(Path file) throws IOException {
+        positions.sort();
+        openings.sort();
+        eliminations.sort();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            buffer.putInt(GameIndex.MAGIC);
+            buffer.putInt(openingPlies);
+            buffer.putLong(gameCount);
+            buffer.putLong(positions.size());
+            buffer.putLong(openings.size());
+            buffer.putLong(eliminations.size());
+
+            for (int game = 0; game < gameCount; game++) {
+                if (buffer.remaining() < GameIndex.GAME_SIZE) {
+                    drain(channel, buffer);
+                }
+                long info = games[2 * game + 1];
+                buffer.putLong(games[2 * game]);
+                buffer.putInt((int) (info >>> 32));
+                buffer.putInt((int) info);
+            }
+            positions.writeTo(channel, buffer);
+            openings.writeTo(channel, buffer);
+            eliminations.writeTo(channel, buffer);
+            drain(channel, buffer);
+        }
+    }
+
+    /**
+     * Remove the temporary files of the sorted runs
+     */
+    @Override
+    public void close() throws IOException {
+        positions.close();
+        openings.close();
+        eliminations.close();
+    }
+
+    /**
+     * Write out a filled buffer and clear it
+     */
+    static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Key/value pairs read back sorted by unsigned key, then value. Pairs are gathered in one
+     * primitive array of up to runSize entries; whenever it fills up it is sorted and spilled to a
+     * temporary file as a run, and the runs are merged as the list is read, so the heap holds at
+     * most one run however many pairs are added.
+     */
+    static class EntryList implements Closeable {
+        static final int RUN_SIZE = 1 << 23; // Entries sorted in memory at a time (128 MB)
+        private static final int READ_AHEAD = 1 << 15; // Bytes buffered per run while merging
+        private static final int MERGE_BUFFERS = 1 << 26; // Bytes buffered for all runs together
+
+        private final int runSize;
+        private long[] entries = new long[2 * 1024];
+        private int size; // Entries in the array
+        private long total;
+
+        private Path spillFile;
+        private FileChannel spill;
+        private ByteBuffer spillBuffer;
+        private long[] runEnds = new long[16]; // Spill file offset after each run
+        private int runCount;
+
+        // Reading back: the array from cursor on, or a heap of runs ordered by their next entry
+        private int cursor;
+        private Run[] heap;
+        private int heapSize;
+        private long key;
+        private long value;
+
+        EntryList() {
+            this(RUN_SIZE);
+        }
+
+        EntryList(int runSize) {
+            this.runSize = runSize;
+        }
+
+        void add(long key, long value) throws IOException {
+            if (size == runSize) {
+                spillRun();
+            }
+            if (2 * size == entries.length) {
+                entries = Arrays.copyOf(entries, (int) Math.min(entries.length * 2L, 2L * runSize));
+            }
+            entries[2 * size] = key;
+            entries[2 * size + 1] = value;
+            size++;
+            total++;
+        }
+
+        long size() {
+            return total;
+        }
+
+        /**
+         * Finish adding and start reading the entries in order with next
+         */
+        void sort() throws IOException {
+            if (runCount > 0 && size > 0) {
+                spillRun();
+            } else {
+                quickSort(0, size - 1);
+            }
+            cursor = 0;
+            if (runCount > 0) {
+                spillBuffer = null;
+                // Share the merge buffers between the runs, in whole entries
+                int readAhead = Math.max(1, Math.min(READ_AHEAD, MERGE_BUFFERS / runCount) / GameIndex.ENTRY_SIZE)
+                        * GameIndex.ENTRY_SIZE;
+                heap = new Run[runCount];
+                heapSize = 0;
+                for (int i = 0; i < runCount; i++) {
+                    Run run = new Run(i == 0 ? 0 : runEnds[i - 1], runEnds[i], readAhead);
+                    if (run.next()) {
+                        heap[heapSize++] = run;
+                    }
+                }
+                for (int i = heapSize / 2 - 1; i >= 0; i--) {
+                    siftDown(i);
+                }
+            }
+        }
+
+        /**
+         * Move to the next entry in sorted order
+         * @return false once every entry has been read
+         */
+        boolean next() throws IOException {
+            if (heap == null) {
+                if (cursor == size) {
+                    return false;
+                }
+                key = entries[2 * cursor];
+                value = entries[2 * cursor + 1];
+                cursor++;
+                return true;
+            }
+            if (heapSize == 0) {
+                return false;
+            }
+            Run run = heap[0];
+            key = run.key;
+            value = run.value;
+            if (!run.next()) {
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(0);
+            return true;
+        }
+
+        long key() {
+            return key;
+        }
+
+        long value() {
+            return value;
+        }
+
+        /**
+         * Sort the array and append it to the spill file as one run
+         */
+        private void spillRun() throws IOException {
+            quickSort(0, size - 1);
+            if (spill == null) {
+                spillFile = Files.createTempFile("entries", ".run");
+                spill = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                spillBuffer = ByteBuffer.allocateDirect(1 << 16);
+            }
+            for (int i = 0; i < 2 * size; i++) {
+                if (spillBuffer.remaining() < Long.BYTES) {
+                    drain(spill, spillBuffer);
+                }
+                spillBuffer.putLong(entries[i]);
+            }
+            drain(spill, spillBuffer);
+            if (runCount == runEnds.length) {
+                runEnds = Arrays.copyOf(runEnds, runCount * 2);
+            }
+            runEnds[runCount++] = spill.position();
+            size = 0;
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int smallest = index;
+                int left = 2 * index + 1;
+                if (left < heapSize && heap[left].compareTo(heap[smallest]) < 0) smallest = left;
+                if (left + 1 < heapSize && heap[left + 1].compareTo(heap[smallest]) < 0) smallest = left + 1;
+                if (smallest == index) {
+                    return;
+                }
+                Run run = heap[index];
+                heap[index] = heap[smallest];
+                heap[smallest] = run;
+                index = smallest;
+            }
+        }
+
+        private void quickSort(int low, int high) {
+            while (high - low > 16) {
+                int mid = (low + high) >>> 1;
+                // Median of three as the pivot
+                if (compare(mid, low) < 0) swap(mid, low);
+                if (compare(high, low) < 0) swap(high, low);
+                if (compare(high, mid) < 0) swap(high, mid);
+                long pivotKey = entries[2 * mid];
+                long pivotValue = entries[2 * mid + 1];
+
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (compare(i, pivotKey, pivotValue) < 0) i++;
+                    while (compare(j, pivotKey, pivotValue) > 0) j--;
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+                // Recurse into the smaller side to bound the stack
+                if (j - low < high - i) {
+                    quickSort(low, j);
+                    low = i;
+                } else {
+                    quickSort(i, high);
+                    high = j;
+                }
+            }
+            for (int i = low + 1; i <= high; i++) {
+                for (int j = i; j > low && compare(j, j - 1) < 0; j--) {
+                    swap(j, j - 1);
+                }
+            }
+        }
+
+        private int compare(int a, int b) {
+            return compare(a, entries[2 * b], entries[2 * b + 1]);
+        }
+
+        private int compare(int a, long key, long value) {
+            return compare(entries[2 * a], entries[2 * a + 1], key, value);
+        }
+
+        private static int compare(long keyA, long valueA, long keyB, long valueB) {
+            int order = Long.compareUnsigned(keyA, keyB);
+            return order != 0 ? order : Long.compare(valueA, valueB);
+        }
+
+        private void swap(int a, int b) {
+            long key = entries[2 * a];
+            long value = entries[2 * a + 1];
+            entries[2 * a] = entries[2 * b];
+            entries[2 * a + 1] = entries[2 * b + 1];
+            entries[2 * b] = key;
+            entries[2 * b + 1] = value;
+        }
+
+        /**
+         * Write the sorted entries after sort, as ENTRY_SIZE byte pairs
+         */
+        void writeTo(FileChannel channel, ByteBuffer buffer) throws IOException {
+            while (next()) {
+                if (buffer.remaining() < GameIndex.ENTRY_SIZE) {
+                    drain(channel, buffer);
+                }
+                buffer.putLong(key);
+                buffer.putLong(value);
+            }
+        }
+
+        /**
+         * Drop the spilled runs
+         */
+        @Override
+        public void close() throws IOException {
+            if (spill != null) {
+                spill.close();
+                Files.deleteIfExists(spillFile);
+                spill = null;
+            }
+        }
+
+        /**
+         * One spilled run being merged, read ahead through a small buffer
+         */
+        private class Run {
+            private final ByteBuffer buffer;
+            private final long end;
+            private long position;
+            private long key;
+            private long value;
+
+            Run(long start, long end, int readAhead) {
+                this.position = start;
+                this.end = end;
+                buffer = ByteBuffer.allocate(readAhead);
+                buffer.limit(0);
+            }
+
+            boolean next() throws IOException {
+                if (buffer.remaining() < GameIndex.ENTRY_SIZE) {
+                    if (position == end) {
+                        return false;
+                    }
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                    while (buffer.hasRemaining()) {
+                        if (spill.read(buffer, position + buffer.position()) < 0) {
+                            throw new EOFException("Spill file ends inside a run");
+                        }
+                    }
+                    position += buffer.limit();
+                    buffer.flip();
+                }
+                key = buffer.getLong();
+                value = buffer.getLong();
+                return true;
+            }
+
+            int compareTo(Run other) {
+                return compare(key, value, other.key, other.value);
+            }
+        }
+    }
+
+    /**
+     * Parse a move such as "g6-g5" or "b8xa7=G" and check it is legal for the side to move
+     * @throws IllegalArgumentException if it is malformed or illegal
+     */
+    static int parseMove(RulesEngine rules, String text) {
+        if (text.length() < 5) {
+            throw new IllegalArgumentException("Bad move: " + text);
+        }
+        int move = rules.findMove(parseSquare(text.substring(0, 2)), parseSquare(text.substring(3, 5)));
+        if (move == Move.NONE) {
+            throw new IllegalArgumentException("Illegal move for " + Position.PLAYERS[rules.getSideToMove()] + ": " + text);
+        }
+        return move;
+    }
+
+    /**
+     * Inverse of Move.squareName
+     */
+    static int parseSquare(String name) {
+        int col = name.charAt(0) - 'a';
+        int row = '8' - name.charAt(1);
+        if (col < 0 || col >= Board.SIZE || row < 0 || row >= Board.SIZE) {
+            throw new IllegalArgumentException("Bad square: " + name);
+        }
+        return Position.square(row, col);
+    }
+
+    static int parsePlayer(String name) {
+        for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+            if (Position.PLAYERS[p].name().equalsIgnoreCase(name)) {
+                return p;
+            }
+        }
+        throw new IllegalArgumentException("Unknown player: " + name);
+    }
+
+    private static String percent(int count, int total) {
+        return String.format("%d (%.1f%%)", count, total == 0 ? 0.0 : 100.0 * count / total);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: GameIndexer build|opening|position|eliminations ...");
+            System.exit(1);
+        }
+        switch (args[0]) {
+            case "build": {
+                int plies = DEFAULT_OPENING_PLIES;
+                for (int i = 3; i < args.length; i++) {
+                    if (args[i].equals("--opening-plies")) {
+                        plies = Integer.parseInt(args[++i]);
+                    }
+                }
+                long start = System.nanoTime();
+                try (GameIndexer indexer = new GameIndexer(plies)) {
+                    try (GameRecordReader reader = new GameRecordReader(Path.of(args[1]))) {
+                        indexer.addArchive(reader);
+                    }
+                    indexer.write(Path.of(args[2]));
+                    System.out.printf("Indexed %d games (%d cut short by illegal moves): %d positions, %d opening entries, %d eliminations in %d ms%n",
+                            indexer.gameCount, indexer.illegalGames, indexer.positions.size(), indexer.openings.size(),
+                            indexer.eliminations.size(), (System.nanoTime() - start) / 1_000_000);
+                }
+                break;
+            }
+            case "opening": {
+                RulesEngine rules = new RulesEngine();
+                long startKey = rules.getPosition().getKey();
+                int[] moves = new int[args.length - 2];
+                for (int i = 0; i < moves.length; i++) {
+                    moves[i] = parseMove(rules, args[i + 2]);
+                    rules.applyMove(moves[i]);
+                }
+                try (GameIndex index = new GameIndex(Path.of(args[1]))) {
+                    GameIndex.OpeningStatistics statistics = index.getOpeningStatistics(startKey, moves, moves.length);
+                    int games = statistics.getGames();
+                    System.out.println(games + " games, " + percent(statistics.getDraws(), games) + " drawn, "
+                            + percent(statistics.getUnfinished(), games) + " unfinished");
+                    for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+                        System.out.printf("%-7s wins %s, eliminated first %s%n", Position.PLAYERS[p],
+                                percent(statistics.getWins(p), games), percent(statistics.getEliminatedFirst(p), games));
+                    }
+                }
+                break;
+            }
+            case "position": {
+                StringBuilder text = new StringBuilder();
+                for (int i = 2; i < args.length; i++) {
+                    text.append(args[i]).append(' ');
+                }
+                long key = PositionCodec.fromText(text.toString()).getKey();
+                try (GameIndex index = new GameIndex(Path.of(args[1]))) {
+                    long[] occurrences = index.findPosition(key);
+                    System.out.println(occurrences.length + " occurrences");
+                    for (int i = 0; i < Math.min(20, occurrences.length); i++) {
+                        System.out.println("  game " + (occurrences[i] >>> 24) + " ply " + (occurrences[i] & MAX_PLY));
+                    }
+                }
+                break;
+            }
+            case "eliminations": {
+                int victor = parsePlayer(args[2]);
+                int loser = parsePlayer(args[3]);
+                boolean checkmate = !(args.length > 4 && args[4].equals("--stalemate"));
+                try (GameIndex index = new GameIndex(Path.of(args[1]))) {
+                    long[] found = index.findEliminations(victor, loser, checkmate, 0, MAX_PLY);
+                    System.out.print(Position.PLAYERS[victor] + (checkmate ? " checkmated " : " stalemated ")
+                            + Position.PLAYERS[loser] + " " + found.length + " times");
+                    if (found.length > 0) {
+                        long total = 0;
+                        for (long occurrence : found) {
+                            total += occurrence & MAX_PLY;
+                        }
+                        System.out.print(", plies " + (found[0] & MAX_PLY) + "-" + (found[found.length - 1] & MAX_PLY)
+                                + " (avg " + total / found.length + ")");
+                    }
+                    System.out.println();
+                }
+                break;
+            }
+            default:
+                System.err.println("Unknown command: " + args[0]);
+                System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Wire format between GameServer and its clients. Every message is a type byte and an int game id
+ * followed by a fixed payload, all big-endian, so both sides read with a small buffer and never
+ * allocate per message. One connection may hold any number of seats in any number of games.
+ *
+ * Client to server:
+ *  JOIN   game (0 for any open game)           take the next free seat
+ *  MOVE   game, short from | to << 6           play for the seat whose turn it is
+ *  LEAVE  game                                 give up the seat, which abandons the game
+ *
+ * Server to client:
+ *  JOINED game, byte player                    seat taken
+ *  START  game, byte repetitions, short limit  all four seats taken, Spring to move from the
+ *                                              initial setup under these draw rules
+ *  MOVED  game, short move, short events       a move with its flags and GameEvent bits
+ *  OVER   game, byte winner (-1 if none), byte reason
+ *  ERROR  game, byte error                     a JOIN or MOVE that was refused
+ */
+public final class GameProtocol {
+    // Message types
+    public static final int JOIN = 1;
+    public static final int MOVE = 2;
+    public static final int LEAVE = 3;
+    public static final int JOINED = 11;
+    public static final int START = 12;
+    public static final int MOVED = 13;
+    public static final int OVER = 14;
+    public static final int ERROR = 15;
+
+    // Reasons a game ended
+    public static final int REASON_WIN = 0;
+    public static final int REASON_REPETITION = 1;
+    public static final int REASON_MOVE_LIMIT = 2;
+    public static final int REASON_NO_MOVES = 3; // The side to move is stuck without being eliminated
+    public static final int REASON_ABANDONED = 4;
+
+    // Errors
+    public static final int ERROR_NO_GAME = 1;
+    public static final int ERROR_SERVER_FULL = 2;
+    public static final int ERROR_TOO_MANY_SEATS = 3;
+    public static final int ERROR_NOT_YOUR_TURN = 4;
+    public static final int ERROR_ILLEGAL_MOVE = 5;
+
+    private static final String[] REASONS = {"win", "repetition", "move-limit", "no-moves", "abandoned"};
+    private static final String[] ERRORS = {"none", "no-game", "server-full", "too-many-seats", "not-your-turn", "illegal-move"};
+
+    private GameProtocol() {
+    }
+
+    public static String reasonToString(int reason) {
+        return reason >= 0 && reason < REASONS.length ? REASONS[reason] : "reason " + reason;
+    }
+
+    public static String errorToString(int error) {
+        return error >= 0 && error < ERRORS.length ? ERRORS[error] : "error " + error;
+    }
+
+    /**
+     * Messages waiting for one socket, added by any thread and written by a single writer thread,
+     * so nobody blocks on a slow peer while holding a game. Two fixed buffers are swapped on every
+     * write; a peer that falls further behind than one buffer is cut off instead of growing it.
+     * Uses a lock rather than a monitor, as a virtual thread waiting on a monitor holds on to its
+     * carrier thread.
+     */
+    public static class Outbox {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition filled = lock.newCondition();
+        private ByteBuffer pending;
+        private ByteBuffer writing;
+        private boolean closed;
+
+        public Outbox(int capacity) {
+            pending = ByteBuffer.allocate(capacity);
+            writing = ByteBuffer.allocate(capacity);
+        }
+
+        public boolean join(int game) {
+            return offer(JOIN, game, 0, 0);
+        }
+
+        public boolean move(int game, int move) {
+            return offer(MOVE, game, Move.squares(move), 2);
+        }
+
+        public boolean leave(int game) {
+            return offer(LEAVE, game, 0, 0);
+        }
+
+        public boolean joined(int game, int player) {
+            return offer(JOINED, game, player, 1);
+        }
+
+        public boolean start(int game, int repetitions, int moveLimit) {
+            return offer(START, game, repetitions << 16 | moveLimit, 3);
+        }
+
+        public boolean moved(int game, int move, int events) {
+            return offer(MOVED, game, move << 16 | events, 4);
+        }
+
+        public boolean over(int game, int winner, int reason) {
+            return offer(OVER, game, (winner & 0xFF) << 8 | reason, 2);
+        }
+
+        public boolean error(int game, int error) {
+            return offer(ERROR, game, error, 1);
+        }
+
+        /**
+         * Queue a message whose payload is the low payloadSize bytes of payload
+         * @return false if the outbox is closed or full
+         */
+        private boolean offer(int type, int game, int payload, int payloadSize) {
+            lock.lock();
+            try {
+                if (closed || pending.remaining() < 5 + payloadSize) {
+                    return false;
+                }
+                if (pending.position() == 0) {
+                    filled.signal();
+                }
+                pending.put((byte) type);
+                pending.putInt(game);
+                for (int shift = 8 * (payloadSize - 1); shift >= 0; shift -= 8) {
+                    pending.put((byte) (payload >>> shift));
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Write queued messages until the outbox is closed and empty; run by the writer thread
+         */
+        public void drainTo(OutputStream out) throws IOException, InterruptedException {
+            while (true) {
+                lock.lock();
+                try {
+                    while (pending.position() == 0 && !closed) {
+                        filled.await();
+                    }
+                    if (pending.position() == 0) {
+                        return;
+                    }
+                    ByteBuffer full = pending;
+                    pending = writing;
+                    writing = full;
+                } finally {
+                    lock.unlock();
+                }
+                out.write(writing.array(), 0, writing.position());
+                out.flush();
+                writing.clear();
+            }
+        }
+
+        /**
+         * Stop taking messages; drainTo returns once what is queued has been written
+         */
+        public void close() {
+            lock.lock();
+            try {
+                closed = true;
+                filled.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
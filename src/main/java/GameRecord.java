@@ -0,0 +1,136 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * One game as recorded: an id, the start position and a stream of 16-bit entries. An entry is
+ * either a move (bit 15 clear, the Move encoding including its capture and promotion flags) or
+ * an event (bit 15 set):
+ *
+ *  elimination  bits 0-1 loser, bits 2-3 victor, bit 4 set for checkmate (clear for stalemate);
+ *               the loser's army passes to the victor
+ *  game over    bit 14 set, bits 0-1 winner, or bit 13 set as well for a draw
+ *
+ * Stored as: int MAGIC, int length of what follows, long id, PositionCodec.ENCODED_SIZE bytes of
+ * start position, then the entries as big-endian shorts.
+ */
+public class GameRecord {
+    public static final int MAGIC = 0x46534752; // "FSGR"
+    public static final int HEADER_SIZE = 2 * Integer.BYTES; // Magic and length
+    public static final int FIXED_SIZE = Long.BYTES + PositionCodec.ENCODED_SIZE; // Length without entries
+
+    private static final int EVENT = 1 << 15;
+    private static final int GAME_OVER = 1 << 14;
+    private static final int DRAW = 1 << 13;
+    private static final int CHECKMATE = 1 << 4;
+
+    private final long id;
+    private final PositionSnapshot start;
+    private short[] entries = new short[64];
+    private int size;
+
+    public GameRecord(long id, PositionSnapshot start) {
+        this.id = id;
+        this.start = start;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public PositionSnapshot getStart() {
+        return start;
+    }
+
+    public int getEntryCount() {
+        return size;
+    }
+
+    public int getEntry(int index) {
+        return entries[index] & 0xFFFF;
+    }
+
+    public void addMove(int move) {
+        add(move & 0x3FFF);
+    }
+
+    public void addElimination(int loser, int victor, boolean checkmate) {
+        add(EVENT | loser | victor << 2 | (checkmate ? CHECKMATE : 0));
+    }
+
+    public void addGameOver(int winner) {
+        add(EVENT | GAME_OVER | winner);
+    }
+
+    public void addDraw() {
+        add(EVENT | GAME_OVER | DRAW);
+    }
+
+    private void add(int entry) {
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+        }
+        entries[size++] = (short) entry;
+    }
+
+    /**
+     * Bytes this record takes on disk
+     */
+    public int getEncodedSize() {
+        return HEADER_SIZE + FIXED_SIZE + size * Short.BYTES;
+    }
+
+    public void writeTo(ByteBuffer out) {
+        out.putInt(MAGIC);
+        out.putInt(FIXED_SIZE + size * Short.BYTES);
+        out.putLong(id);
+        PositionCodec.encode(start, out);
+        for (int i = 0; i < size; i++) {
+            out.putShort(entries[i]);
+        }
+    }
+
+    public static boolean isMove(int entry) {
+        return (entry & EVENT) == 0;
+    }
+
+    public static boolean isElimination(int entry) {
+        return (entry & (EVENT | GAME_OVER)) == EVENT;
+    }
+
+    public static boolean isGameOver(int entry) {
+        return (entry & (EVENT | GAME_OVER)) == (EVENT | GAME_OVER);
+    }
+
+    public static boolean isDraw(int entry) {
+        return isGameOver(entry) && (entry & DRAW) != 0;
+    }
+
+    /**
+     * @return the loser of an elimination entry, or the winner of a game over entry
+     */
+    public static int player(int entry) {
+        return entry & 3;
+    }
+
+    public static int victor(int entry) {
+        return (entry >>> 2) & 3;
+    }
+
+    public static boolean isCheckmate(int entry) {
+        return (entry & CHECKMATE) != 0;
+    }
+
+    public static String entryToString(int entry) {
+        if (isMove(entry)) {
+            return Move.toString(entry);
+        }
+        if (isDraw(entry)) {
+            return "game over, draw";
+        }
+        if (isGameOver(entry)) {
+            return "game over, " + Position.PLAYERS[player(entry)] + " wins";
+        }
+        return Position.PLAYERS[victor(entry)] + (isCheckmate(entry) ? " checkmates " : " stalemates ")
+                + Position.PLAYERS[player(entry)];
+    }
+}
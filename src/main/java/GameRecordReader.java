@@ -0,0 +1,181 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Scans a game record archive through memory-mapped windows, so archives larger than 2 GB can be
+ * read without copying them onto the heap. The reader is a cursor: next() moves to the following
+ * record and the accessors read that record straight from the mapping.
+ *
+ * Usage: java GameRecordReader FILE [--moves]
+ */
+public class GameRecordReader implements Closeable {
+    public static final int UNFINISHED = -1; // Result of a record without a game over entry
+    public static final int DRAW = -2; // Result of a drawn game
+
+    private static final long WINDOW = 1L << 30; // Bytes mapped at a time
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long windowSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long next; // File offset of the next record
+    private int record; // Offset of the current record's body in the window
+    private int entryCount;
+
+    public GameRecordReader(Path file) throws IOException {
+        this(file, WINDOW);
+    }
+
+    /**
+     * Map windowSize bytes at a time; small windows let tests cross window boundaries
+     */
+    GameRecordReader(Path file, long windowSize) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        fileSize = channel.size();
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Move to the next complete record
+     * @return false at the end of the archive, including a record cut off by an interrupted write
+     * @throws IOException if the data at the cursor is not a game record
+     */
+    public boolean next() throws IOException {
+        if (next + GameRecord.HEADER_SIZE > fileSize) {
+            return false;
+        }
+        map(next, GameRecord.HEADER_SIZE);
+        int at = (int) (next - windowStart);
+        if (window.getInt(at) != GameRecord.MAGIC) {
+            throw new IOException("No game record at offset " + next);
+        }
+        int length = window.getInt(at + Integer.BYTES);
+        if (length < GameRecord.FIXED_SIZE || (length - GameRecord.FIXED_SIZE) % Short.BYTES != 0) {
+            throw new IOException("Bad record length " + length + " at offset " + next);
+        }
+        if (next + GameRecord.HEADER_SIZE + length > fileSize) {
+            return false;
+        }
+
+        map(next, GameRecord.HEADER_SIZE + length);
+        record = (int) (next - windowStart) + GameRecord.HEADER_SIZE;
+        entryCount = (length - GameRecord.FIXED_SIZE) / Short.BYTES;
+        next += GameRecord.HEADER_SIZE + length;
+        return true;
+    }
+
+    /**
+     * Make sure [offset, offset + length) lies inside the current window
+     */
+    private void map(long offset, int length) throws IOException {
+        if (window != null && offset >= windowStart && offset + length <= windowStart + window.capacity()) {
+            return;
+        }
+        windowStart = offset;
+        long size = Math.min(Math.max(windowSize, length), fileSize - offset);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, size);
+    }
+
+    /**
+     * File offset of the current record, for indexes that point back into the archive
+     */
+    public long getOffset() {
+        return windowStart + record - GameRecord.HEADER_SIZE;
+    }
+
+    public long getId() {
+        return window.getLong(record);
+    }
+
+    public PositionSnapshot getStart() {
+        return PositionCodec.decode(window.slice(record + Long.BYTES, PositionCodec.ENCODED_SIZE));
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public int getEntry(int index) {
+        return window.getShort(record + GameRecord.FIXED_SIZE + index * Short.BYTES) & 0xFFFF;
+    }
+
+    /**
+     * How the current record says the game ended, from its last game over entry
+     * @return the winner, DRAW, or UNFINISHED if the record does not end the game
+     */
+    public int getResult() {
+        for (int i = entryCount - 1; i >= 0; i--) {
+            int entry = getEntry(i);
+            if (GameRecord.isGameOver(entry)) {
+                return GameRecord.isDraw(entry) ? DRAW : GameRecord.player(entry);
+            }
+        }
+        return UNFINISHED;
+    }
+
+    /**
+     * Rules to replay records with. The draw rules are off, so a replay follows the record whatever
+     * rules it was played under; results come from getResult.
+     */
+    public static RulesEngine newReplay() {
+        RulesEngine rules = new RulesEngine(new Position());
+        rules.getHistory().setDrawRules(0, 0);
+        return rules;
+    }
+
+    /**
+     * Set a replay up at the current record's start position
+     */
+    public void startReplay(RulesEngine rules) {
+        getStart().restore(rules.getPosition());
+        rules.resetHistory();
+    }
+
+    /**
+     * Jump to the record at a file offset returned by getOffset
+     */
+    public boolean seek(long offset) throws IOException {
+        next = offset;
+        return next();
+    }
+
+    /**
+     * Start again from the first record
+     */
+    public void rewind() {
+        next = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean moves = args.length > 1 && args[1].equals("--moves");
+        long games = 0;
+        long entries = 0;
+        try (GameRecordReader reader = new GameRecordReader(Path.of(args[0]))) {
+            while (reader.next()) {
+                games++;
+                entries += reader.getEntryCount();
+                if (moves) {
+                    StringBuilder line = new StringBuilder("game " + reader.getId() + ":");
+                    for (int i = 0; i < reader.getEntryCount(); i++) {
+                        int entry = reader.getEntry(i);
+                        line.append(GameRecord.isMove(entry) ? " " : " [").append(GameRecord.entryToString(entry))
+                                .append(GameRecord.isMove(entry) ? "" : "]");
+                    }
+                    System.out.println(line);
+                }
+            }
+        }
+        System.out.println(games + " games, " + entries + " entries");
+    }
+}
@@ -0,0 +1,54 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends game records to an archive file through a direct buffer. Records are only ever added at
+ * the end, whole, so an archive can be extended by many runs and read while it grows. Safe to
+ * share between threads.
+ */
+public class GameRecordWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    public GameRecordWriter(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    public synchronized void append(GameRecord record) throws IOException {
+        int size = record.getEncodedSize();
+        if (size > buffer.remaining()) {
+            drain();
+            if (size > buffer.capacity()) {
+                buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(size) << 1);
+            }
+        }
+        record.writeTo(buffer);
+    }
+
+    /**
+     * Write out buffered records
+     */
+    public synchronized void flush() throws IOException {
+        drain();
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        drain();
+        channel.close();
+    }
+}
@@ -0,0 +1,430 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Headless game server: hosts many independent four-player games for clients speaking
+ * GameProtocol over TCP. Each game is its own RulesEngine behind its own lock, so games never wait
+ * for one another. Every connection gets a virtual reader thread that applies its moves and a
+ * virtual writer thread that drains its GameProtocol.Outbox, so pushing events to the other seats
+ * never blocks on their sockets.
+ *
+ * Memory is bounded per game and per connection: a game compacts its rules core after every move
+ * (the move limit, which is therefore required, then caps its position history), a connection has
+ * fixed read and outbox buffers, and both the number of games and the seats per connection are
+ * capped.
+ *
+ * Usage: java GameServer [--port N] [--max-games N] [--max-seats N] [--repetitions N] [--move-limit N]
+ */
+public class GameServer implements Closeable {
+    public static final int DEFAULT_PORT = 7474;
+    public static final int DEFAULT_MAX_GAMES = 10_000;
+    public static final int DEFAULT_MAX_SEATS = 1024; // Per connection
+
+    private static final int READ_BUFFER_SIZE = 512;
+    private static final int OUTBOX_SIZE = 32 * 1024;
+
+    private final int maxGames;
+    private final int maxSeats;
+    private final int repetitions;
+    private final int moveLimit;
+    private final Map<Integer, ServerGame> games = new ConcurrentHashMap<>();
+    private final AtomicReference<ServerGame> openGame = new AtomicReference<>(); // Still taking seats
+    private final AtomicInteger nextGameId = new AtomicInteger(1);
+    private final AtomicInteger peakGames = new AtomicInteger();
+    private final AtomicLong movesPlayed = new AtomicLong();
+    private final AtomicLong gamesFinished = new AtomicLong();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+    private ServerSocket serverSocket;
+
+    /**
+     * @param repetitions draw rules for every game, see PositionHistory.setDrawRules
+     * @param moveLimit must be set, it bounds every game
+     */
+    public GameServer(int maxGames, int maxSeats, int repetitions, int moveLimit) {
+        if (moveLimit <= 0 || moveLimit > 0xFFFF || repetitions < 0 || repetitions > 0xFF) {
+            throw new IllegalArgumentException("Need a move limit of 1-65535 and 0-255 repetitions");
+        }
+        this.maxGames = maxGames;
+        this.maxSeats = maxSeats;
+        this.repetitions = repetitions;
+        this.moveLimit = moveLimit;
+    }
+
+    public GameServer() {
+        this(DEFAULT_MAX_GAMES, DEFAULT_MAX_SEATS, PositionHistory.DEFAULT_REPETITIONS, PositionHistory.DEFAULT_MOVE_LIMIT);
+    }
+
+    /**
+     * Listen on a port, 0 for any free one, and accept connections in the background
+     */
+    public void start(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 1024);
+        threads.execute(this::acceptConnections);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getGameCount() {
+        return games.size();
+    }
+
+    public int getPeakGameCount() {
+        return peakGames.get();
+    }
+
+    public long getMovesPlayed() {
+        return movesPlayed.get();
+    }
+
+    public long getGamesFinished() {
+        return gamesFinished.get();
+    }
+
+    private void acceptConnections() {
+        try {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                threads.execute(connection::read);
+                threads.execute(connection::write);
+            }
+        } catch (IOException e) {
+            if (!serverSocket.isClosed()) {
+                System.err.println("Accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Seat a connection in the open game, opening a new one when there is none
+     */
+    private void joinAny(Connection connection) {
+        while (true) {
+            ServerGame game = openGame.get();
+            if (game == null) {
+                if (games.size() >= maxGames) {
+                    connection.send(connection.outbox.error(0, GameProtocol.ERROR_SERVER_FULL));
+                    return;
+                }
+                game = new ServerGame(nextGameId.getAndIncrement());
+                if (!openGame.compareAndSet(null, game)) {
+                    continue;
+                }
+                games.put(game.id, game);
+                peakGames.accumulateAndGet(games.size(), Math::max);
+            }
+            if (game.seat(connection)) {
+                return;
+            }
+            // Filled or abandoned since it was read
+            openGame.compareAndSet(game, null);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        threads.shutdown();
+        try {
+            threads.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * One game: the rules, the connection in each seat and whether it is still running
+     */
+    private class ServerGame {
+        private final int id;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final RulesEngine rules;
+        private final Connection[] seats = new Connection[Position.PLAYER_COUNT];
+        private int seated;
+        private boolean over;
+
+        ServerGame(int id) {
+            this.id = id;
+            Position position = new Position(1); // Compacted after every move, so one undo frame is enough
+            new PieceSetup(position).setupInitialPieces();
+            rules = new RulesEngine(position);
+            rules.getHistory().setDrawRules(repetitions, moveLimit);
+        }
+
+        /**
+         * Give the next free seat to a connection and start the game once all are taken
+         * @return false if the game is already full or over
+         */
+        boolean seat(Connection connection) {
+            lock.lock();
+            try {
+                if (over || seated == Position.PLAYER_COUNT) {
+                    return false;
+                }
+                int player = seated++;
+                seats[player] = connection;
+                connection.games.put(id, this);
+                connection.seatCount.incrementAndGet();
+                connection.send(connection.outbox.joined(id, player));
+                if (seated == Position.PLAYER_COUNT) {
+                    openGame.compareAndSet(this, null);
+                    for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+                        if (isFirstSeat(p)) {
+                            seats[p].send(seats[p].outbox.start(id, repetitions, moveLimit));
+                        }
+                    }
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void move(Connection connection, int squares) {
+            lock.lock();
+            try {
+                if (over) {
+                    connection.send(connection.outbox.error(id, GameProtocol.ERROR_NO_GAME));
+                    return;
+                }
+                if (seated < Position.PLAYER_COUNT || seats[rules.getSideToMove()] != connection) {
+                    connection.send(connection.outbox.error(id, GameProtocol.ERROR_NOT_YOUR_TURN));
+                    return;
+                }
+                int move = rules.findMove(Move.from(squares), Move.to(squares));
+                if (move == Move.NONE) {
+                    connection.send(connection.outbox.error(id, GameProtocol.ERROR_ILLEGAL_MOVE));
+                    return;
+                }
+
+                int events = rules.applyMove(move);
+                rules.compact();
+                movesPlayed.incrementAndGet();
+                for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+                    if (isFirstSeat(p)) {
+                        seats[p].send(seats[p].outbox.moved(id, move, events));
+                    }
+                }
+
+                if ((events & GameEvent.DRAW_REPETITION) != 0) {
+                    finish(-1, GameProtocol.REASON_REPETITION);
+                } else if ((events & GameEvent.DRAW_MOVE_LIMIT) != 0) {
+                    finish(-1, GameProtocol.REASON_MOVE_LIMIT);
+                } else if (GameEvent.isGameOver(events)) {
+                    finish(rules.getWinner(), GameProtocol.REASON_WIN);
+                } else if (!rules.hasLegalMove()) {
+                    // GameController would wait forever here, so end the game instead
+                    finish(-1, GameProtocol.REASON_NO_MOVES);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * A player gave up their seat or lost their connection; nobody can take it over
+         */
+        void abandon() {
+            lock.lock();
+            try {
+                if (!over) {
+                    finish(-1, GameProtocol.REASON_ABANDONED);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Tell every seat and forget the game; called holding the lock
+         */
+        private void finish(int winner, int reason) {
+            over = true;
+            openGame.compareAndSet(this, null);
+            games.remove(id);
+            gamesFinished.incrementAndGet();
+            for (int p = 0; p < seated; p++) {
+                seats[p].seatCount.decrementAndGet();
+                if (isFirstSeat(p)) {
+                    seats[p].send(seats[p].outbox.over(id, winner, reason));
+                    seats[p].games.remove(id);
+                }
+            }
+        }
+
+        /**
+         * True for the lowest seat held by its connection, so a connection holding several seats
+         * hears about each event once
+         */
+        private boolean isFirstSeat(int player) {
+            for (int p = 0; p < player; p++) {
+                if (seats[p] == seats[player]) {
+                    return false;
+                }
+            }
+            return seats[player] != null;
+        }
+    }
+
+    /**
+     * One client socket with the games it sits in
+     */
+    private class Connection {
+        private final Socket socket;
+        private final GameProtocol.Outbox outbox = new GameProtocol.Outbox(OUTBOX_SIZE);
+        private final Map<Integer, ServerGame> games = new ConcurrentHashMap<>();
+        private final AtomicInteger seatCount = new AtomicInteger(); // Seats held in running games
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * Reader thread: handle requests until the client disconnects or breaks the protocol,
+         * then abandon every game it still sits in
+         */
+        void read() {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), READ_BUFFER_SIZE))) {
+                while (true) {
+                    int type = in.read();
+                    if (type < 0) {
+                        break;
+                    }
+                    int id = in.readInt();
+                    switch (type) {
+                        case GameProtocol.JOIN:
+                            join(id);
+                            break;
+                        case GameProtocol.MOVE: {
+                            int squares = in.readUnsignedShort();
+                            ServerGame game = games.get(id);
+                            if (game != null) {
+                                game.move(this, squares);
+                            } else {
+                                send(outbox.error(id, GameProtocol.ERROR_NO_GAME));
+                            }
+                            break;
+                        }
+                        case GameProtocol.LEAVE: {
+                            ServerGame game = games.get(id);
+                            if (game != null) {
+                                game.abandon();
+                            }
+                            break;
+                        }
+                        default:
+                            return; // Unknown message, the rest of the stream cannot be framed
+                    }
+                }
+            } catch (EOFException | SocketException e) {
+                // Disconnected
+            } catch (IOException e) {
+                System.err.println("Connection failed: " + e.getMessage());
+            } finally {
+                close();
+                for (ServerGame game : games.values()) {
+                    game.abandon();
+                }
+                connections.remove(this);
+            }
+        }
+
+        private void join(int id) {
+            if (seatCount.get() >= maxSeats) {
+                send(outbox.error(id, GameProtocol.ERROR_TOO_MANY_SEATS));
+            } else if (id == 0) {
+                joinAny(this);
+            } else {
+                ServerGame game = GameServer.this.games.get(id);
+                if (game == null || !game.seat(this)) {
+                    send(outbox.error(id, GameProtocol.ERROR_NO_GAME));
+                }
+            }
+        }
+
+        /**
+         * Writer thread: send queued messages until the connection is closed
+         */
+        void write() {
+            try {
+                outbox.drainTo(socket.getOutputStream());
+            } catch (IOException e) {
+                close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Check the result of queueing a message; a client too far behind to take it is cut off
+         */
+        void send(boolean queued) {
+            if (!queued) {
+                close();
+            }
+        }
+
+        void close() {
+            outbox.close();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = DEFAULT_PORT;
+        int maxGames = DEFAULT_MAX_GAMES;
+        int maxSeats = DEFAULT_MAX_SEATS;
+        int repetitions = PositionHistory.DEFAULT_REPETITIONS;
+        int moveLimit = PositionHistory.DEFAULT_MOVE_LIMIT;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--max-games": maxGames = Integer.parseInt(args[++i]); break;
+                case "--max-seats": maxSeats = Integer.parseInt(args[++i]); break;
+                case "--repetitions": repetitions = Integer.parseInt(args[++i]); break;
+                case "--move-limit": moveLimit = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        GameServer server = new GameServer(maxGames, maxSeats, repetitions, moveLimit);
+        server.start(port);
+        System.out.println("Listening on port " + server.getPort());
+        long lastMoves = 0;
+        while (true) {
+            Thread.sleep(10_000);
+            long moves = server.getMovesPlayed();
+            System.out.printf("games %d running, %d finished, %d moves/s%n", server.getGameCount(),
+                    server.getGamesFinished(), (moves - lastMoves) / 10);
+            lastMoves = moves;
+        }
+    }
+}
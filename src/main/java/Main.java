@@ -4,12 +4,16 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
 
 public class Main extends JFrame {
     private GameController gameController;
     private BoardView boardView;
     private JLabel gameStatusLabel;
     private JLabel currentPlayerLabel;
+    private GameRecordWriter recordWriter; // Set with -Dfourseasons.record=FILE
+    private Tablebases tablebases; // Loaded from -Dfourseasons.tablebases=DIR
 
     public static void main(String[] args) {
         // Set system look and feel
@@ -26,7 +30,14 @@ public class Main extends JFrame {
 
     private void createAndShowGUI() {
         setTitle("Four Seasons Chess");
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        // Closing the window exits the same way as the Exit menu item, keeping the game record
+        setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                exit();
+            }
+        });
         setResizable(true);
 
         // Initialize game
@@ -60,10 +71,52 @@ public class Main extends JFrame {
         setVisible(true);
     }
 
+    /**
+     * Append the unfinished game to the record file, close it and quit
+     */
+    private void exit() {
+        gameController.setRecordWriter(null);
+        if (recordWriter != null) {
+            try {
+                recordWriter.close();
+            } catch (IOException e) {
+                System.err.println("Could not close game record file: " + e.getMessage());
+            }
+        }
+        System.exit(0);
+    }
+
     private void startNewGame() {
+        if (gameController != null) {
+            gameController.setRecordWriter(null); // Append the abandoned game
+        }
         gameController = new GameController();
         boardView = new BoardView(gameController);
 
+        String recordFile = System.getProperty("fourseasons.record");
+        if (recordFile != null) {
+            try {
+                if (recordWriter == null) {
+                    recordWriter = new GameRecordWriter(Path.of(recordFile));
+                }
+                gameController.setRecordWriter(recordWriter);
+            } catch (IOException e) {
+                System.err.println("Could not open game record file: " + e.getMessage());
+            }
+        }
+
+        String tablebaseDirectory = System.getProperty("fourseasons.tablebases");
+        if (tablebaseDirectory != null) {
+            try {
+                if (tablebases == null) {
+                    tablebases = Tablebases.load(Path.of(tablebaseDirectory));
+                }
+                gameController.setTablebases(tablebases);
+            } catch (IOException e) {
+                System.err.println("Could not load tablebases: " + e.getMessage());
+            }
+        }
+
         setupCallbacks();
     }
 
@@ -162,7 +215,7 @@ public class Main extends JFrame {
             repaint();
         });
 
-        exit.addActionListener(e -> System.exit(0));
+        exit.addActionListener(e -> exit());
 
         gameMenu.add(newGame);
         gameMenu.addSeparator();
@@ -0,0 +1,57 @@
+/**
+ * Moves packed into an int so they can be stored in primitive arrays without allocation.
+ * Bits 0-5 hold the from square, bits 6-11 the to square and bits 12-13 the flags.
+ */
+public final class Move {
+    public static final int NONE = 0; // from == to never occurs in a real move
+
+    public static final int CAPTURE = 1 << 12;
+    public static final int PROMOTION = 1 << 13;
+
+    private Move() {
+    }
+
+    public static int encode(int from, int to) {
+        return from | (to << 6);
+    }
+
+    public static int encode(int from, int to, int flags) {
+        return from | (to << 6) | flags;
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & PROMOTION) != 0;
+    }
+
+    /**
+     * Drop the flags so moves can be compared by squares only
+     */
+    public static int squares(int move) {
+        return move & 0xFFF;
+    }
+
+    /**
+     * Square name with files a-h left to right and ranks 1-8 bottom to top, e.g. row 0 col 0 is "a8"
+     */
+    public static String squareName(int square) {
+        return "" + (char) ('a' + Position.col(square)) + (char) ('8' - Position.row(square));
+    }
+
+    public static String toString(int move) {
+        if (move == NONE) return "none";
+        return squareName(from(move)) + (isCapture(move) ? "x" : "-") + squareName(to(move))
+                + (isPromotion(move) ? "=G" : "");
+    }
+}
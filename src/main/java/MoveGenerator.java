@@ -0,0 +1,224 @@
+/**
+ * Move generation straight from the bitboards into caller-supplied int buffers.
+ * Nothing here allocates, so it can run at every node of a search or perft.
+ */
+public final class MoveGenerator {
+    /** Upper bound on the moves one player can have, even after inheriting every other army */
+    public static final int MAX_MOVES = 256;
+
+    private static final int PAWN = PieceType.PAWN.ordinal();
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Get the destination squares of the piece on a square as a bitboard
+     * @return target mask with squares holding pieces of the same controller removed
+     */
+    public static long targets(Position position, int square) {
+        int code = position.pieceAt(square);
+        if (code == Position.EMPTY) return 0L;
+
+        long targets = 0L;
+        switch (Position.TYPES[Position.typeOf(code)]) {
+            case KING:
+                targets = Attacks.KING[square];
+                break;
+            case ROOK:
+                targets = RookAttacks.attacks(square, position.getOccupied());
+                break;
+            case ELEPHANT:
+                targets = Attacks.ELEPHANT[square];
+                break;
+            case KNIGHT:
+                targets = Attacks.KNIGHT[square];
+                break;
+            case PAWN:
+                // Pawns use their original owner's direction and only move diagonally to capture
+                int owner = Position.ownerOf(code);
+                targets = (Attacks.PAWN_PUSH[owner][square] & ~position.getOccupied())
+                        | (Attacks.PAWN_CAPTURES[owner][square] & position.getOccupied());
+                break;
+            case GENERAL:
+                targets = Attacks.GENERAL[square];
+                break;
+        }
+
+        // Remove moves to squares occupied by friendly pieces (considering controlling player)
+        return targets & ~position.getOccupancy(Position.controllerOf(code));
+    }
+
+    /**
+     * Write the pseudo-legal moves of the piece on a square into the buffer
+     * @return the new move count
+     */
+    public static int generate(Position position, int square, int[] moves, int count) {
+        int code = position.pieceAt(square);
+        long targets = targets(position, square);
+        long promotions = Position.typeOf(code) == PAWN ? Attacks.PROMOTION[Position.ownerOf(code)] : 0L;
+        long occupied = position.getOccupied();
+
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            long bit = targets & -targets;
+            targets ^= bit;
+
+            int flags = 0;
+            if ((occupied & bit) != 0) flags |= Move.CAPTURE;
+            if ((promotions & bit) != 0) flags |= Move.PROMOTION;
+            moves[count++] = Move.encode(square, to, flags);
+        }
+        return count;
+    }
+
+    /**
+     * Write every pseudo-legal move of the pieces a player controls into the buffer
+     * @return number of moves written, at most MAX_MOVES
+     */
+    public static int generatePseudoLegal(Position position, int player, int[] moves) {
+        int count = 0;
+        long pieces = position.getOccupancy(player);
+        while (pieces != 0) {
+            int sq = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            count = generate(position, sq, moves, count);
+        }
+        return count;
+    }
+
+    /**
+     * Write every legal move of the pieces a player controls into the buffer. Pins and the check
+     * evasion mask are computed once for the position; only king moves are verified by make/test.
+     * @return number of moves written
+     */
+    public static int generateLegal(Position position, int player, int[] moves) {
+        int kingSquare = position.kingSquare(player);
+        if (kingSquare < 0) {
+            return generatePseudoLegal(position, player, moves); // Nothing to leave in check
+        }
+        long pinned = pinnedPieces(position, player, kingSquare);
+        long evasions = evasionMask(position, player, kingSquare);
+
+        int count = 0;
+        long pieces = position.getOccupancy(player);
+        while (pieces != 0) {
+            int sq = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            count = generateLegal(position, sq, kingSquare, pinned, evasions, moves, count);
+        }
+        return count;
+    }
+
+    /**
+     * Write the legal moves of the piece on a square into the buffer
+     * @return the new move count
+     */
+    public static int generateLegal(Position position, int square, int[] moves, int count) {
+        int player = Position.controllerOf(position.pieceAt(square));
+        int kingSquare = position.kingSquare(player);
+        if (kingSquare < 0) {
+            return generate(position, square, moves, count);
+        }
+        return generateLegal(position, square, kingSquare, pinnedPieces(position, player, kingSquare),
+                evasionMask(position, player, kingSquare), moves, count);
+    }
+
+    private static int generateLegal(Position position, int square, int kingSquare, long pinned, long evasions,
+                                     int[] moves, int count) {
+        int start = count;
+        count = generate(position, square, moves, count);
+
+        if (square == kingSquare) {
+            // The king's own safety depends on the squares it vacates and enters, so test each one
+            return filterLegal(position, moves, start, count);
+        }
+
+        // Other pieces must resolve any check and may only slide along the line they are pinned to
+        long allowed = evasions;
+        if ((pinned & (1L << square)) != 0) {
+            allowed &= Attacks.LINE[kingSquare][square];
+        }
+        int legal = start;
+        for (int i = start; i < count; i++) {
+            if ((allowed & (1L << Move.to(moves[i]))) != 0) {
+                moves[legal++] = moves[i];
+            }
+        }
+        return legal;
+    }
+
+    /**
+     * Get the player's pieces that are the only blocker between their king and an enemy rook.
+     * Rooks are the only sliders and every other attack is a leap, so this covers every discovered
+     * attack no matter how many opponents line up on the king.
+     */
+    public static long pinnedPieces(Position position, int player, int kingSquare) {
+        long enemyRooks = position.getPieces(PieceType.ROOK.ordinal()) & ~position.getOccupancy(player)
+                & RookAttacks.attacks(kingSquare, 0L);
+        long own = position.getOccupancy(player);
+        long occupied = position.getOccupied();
+        long pinned = 0L;
+
+        while (enemyRooks != 0) {
+            int rook = Long.numberOfTrailingZeros(enemyRooks);
+            enemyRooks &= enemyRooks - 1;
+            long blockers = Attacks.BETWEEN[kingSquare][rook] & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0 && (blockers & own) != 0) {
+                pinned |= blockers;
+            }
+        }
+        return pinned;
+    }
+
+    /**
+     * Get the squares a non-king move must land on: anywhere when not in check, the checker or the
+     * squares between it and the king when in single check, and nowhere in double check
+     */
+    public static long evasionMask(Position position, int player, int kingSquare) {
+        long checkers = position.attackersTo(kingSquare, Position.ALL_PLAYERS & ~(1 << player));
+        if (checkers == 0) {
+            return ~0L;
+        }
+        if ((checkers & (checkers - 1)) != 0) {
+            return 0L;
+        }
+        return checkers | Attacks.BETWEEN[kingSquare][Long.numberOfTrailingZeros(checkers)];
+    }
+
+    /**
+     * Compact the legal moves of moves[start, end) to the front of that range
+     * @return the new end of the range
+     */
+    public static int filterLegal(Position position, int[] moves, int start, int end) {
+        int legal = start;
+        for (int i = start; i < end; i++) {
+            if (isLegal(position, moves[i])) {
+                moves[legal++] = moves[i];
+            }
+        }
+        return legal;
+    }
+
+    /**
+     * Check that a pseudo-legal move does not leave its controller's king attacked, by make/test/unmake
+     */
+    public static boolean isLegal(Position position, int move) {
+        int player = Position.controllerOf(position.pieceAt(Move.from(move)));
+        position.make(move);
+        boolean inCheck = isInCheck(position, player);
+        position.unmake();
+        return !inCheck;
+    }
+
+    public static boolean isInCheck(Position position, int player) {
+        int kingSquare = position.kingSquare(player);
+        return kingSquare >= 0 && position.isSquareAttacked(kingSquare, Position.ALL_PLAYERS & ~(1 << player));
+    }
+
+    /**
+     * Check whether a player has any legal move
+     */
+    public static boolean hasLegalMove(Position position, int player, int[] buffer) {
+        return generateLegal(position, player, buffer) > 0;
+    }
+}
@@ -0,0 +1,157 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Move ordering for one search thread: the transposition table move first, then captures by most
+ * valuable victim / least valuable attacker, promotions, two killer moves per ply, and finally
+ * quiet moves by a history table indexed by (controlling player, from, to).
+ *
+ * Usage: java MoveOrdering [depth] — prints node counts at a fixed depth with and without the
+ * heuristics (the table move is tried first in both)
+ */
+public class MoveOrdering {
+    private static final int TT_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 28;
+    private static final int PROMOTION_SCORE = 1 << 27;
+    private static final int KILLER_SCORE = 1 << 26;
+    private static final int HISTORY_LIMIT = 1 << 24; // History halves before it can reach the killers
+
+    /** Ordering value by PieceType ordinal; kings can be captured here, so they rank above everything */
+    private static final int[] ORDER_VALUES = {2000, 500, 200, 300, 100, 250};
+
+    private final int[][] killers = new int[SearchEngine.MAX_PLY + 1][2];
+    private final int[] history = new int[Position.PLAYER_COUNT * Position.SQUARES * Position.SQUARES];
+    private final int[][] scores = new int[SearchEngine.MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+
+    /**
+     * Forget the killers and age the history before a new search
+     */
+    public void newSearch() {
+        for (int[] slots : killers) {
+            Arrays.fill(slots, Move.NONE);
+        }
+        for (int i = 0; i < history.length; i++) {
+            history[i] >>= 1;
+        }
+    }
+
+    /**
+     * Sort moves[0, count) best first
+     * @param ttMove move stored in the transposition table, or Move.NONE
+     */
+    public void order(Position position, int[] moves, int count, int ply, int ttMove) {
+        int[] score = scores[ply];
+        for (int i = 0; i < count; i++) {
+            score[i] = score(position, moves[i], ply, ttMove);
+        }
+
+        // Insertion sort, stable so equal moves keep generation order
+        for (int i = 1; i < count; i++) {
+            int move = moves[i];
+            int value = score[i];
+            int j = i - 1;
+            while (j >= 0 && score[j] < value) {
+                moves[j + 1] = moves[j];
+                score[j + 1] = score[j];
+                j--;
+            }
+            moves[j + 1] = move;
+            score[j + 1] = value;
+        }
+    }
+
+    private int score(Position position, int move, int ply, int ttMove) {
+        if (move == ttMove) {
+            return TT_SCORE;
+        }
+        int attacker = Position.typeOf(position.pieceAt(Move.from(move)));
+        if (Move.isCapture(move)) {
+            int victim = Position.typeOf(position.pieceAt(Move.to(move)));
+            return CAPTURE_SCORE + ORDER_VALUES[victim] * 64 - ORDER_VALUES[attacker];
+        }
+        if (Move.isPromotion(move)) {
+            return PROMOTION_SCORE;
+        }
+        if (move == killers[ply][0]) {
+            return KILLER_SCORE + 1;
+        }
+        if (move == killers[ply][1]) {
+            return KILLER_SCORE;
+        }
+        return history[historyIndex(Position.controllerOf(position.pieceAt(Move.from(move))), move)];
+    }
+
+    /**
+     * Record a quiet move that caused a cutoff
+     * @param player controller of the moved piece
+     */
+    public void update(int player, int move, int ply, int depth) {
+        if (Move.isCapture(move) || Move.isPromotion(move)) {
+            return; // Already ordered ahead of the quiet moves
+        }
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+
+        int index = historyIndex(player, move);
+        history[index] += depth * depth;
+        if (history[index] >= HISTORY_LIMIT) {
+            for (int i = 0; i < history.length; i++) {
+                history[i] >>= 1;
+            }
+        }
+    }
+
+    private static int historyIndex(int player, int move) {
+        return (player << 12) | Move.squares(move); // from and to fill the low 12 bits
+    }
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        Position[] positions = benchmarkPositions();
+
+        System.out.printf("%-10s %-8s %14s %14s %8s%n", "algorithm", "position", "tt move only", "ordered", "ratio");
+        for (SearchAlgorithm algorithm : new SearchAlgorithm[] {SearchAlgorithm.PARANOID, SearchAlgorithm.BRS}) {
+            long unorderedTotal = 0;
+            long orderedTotal = 0;
+            for (int i = 0; i < positions.length; i++) {
+                long unordered = nodes(algorithm, positions[i], depth, false);
+                long ordered = nodes(algorithm, positions[i], depth, true);
+                unorderedTotal += unordered;
+                orderedTotal += ordered;
+                System.out.printf("%-10s %-8d %14d %14d %8.2f%n", algorithm, i, unordered, ordered,
+                        (double) unordered / ordered);
+            }
+            System.out.printf("%-10s %-8s %14d %14d %8.2f%n", algorithm, "total", unorderedTotal, orderedTotal,
+                    (double) unorderedTotal / orderedTotal);
+        }
+    }
+
+    private static long nodes(SearchAlgorithm algorithm, Position position, int depth, boolean ordering) {
+        SearchEngine engine = new SearchEngine(algorithm, new TranspositionTable(16));
+        engine.setMoveOrdering(ordering);
+        return engine.search(position, SearchLimits.depth(depth)).getNodes();
+    }
+
+    /**
+     * The start position and a few middlegames reached by fixed pseudo-random play
+     */
+    private static Position[] benchmarkPositions() {
+        Position[] positions = new Position[4];
+        positions[0] = PieceSetup.initialPosition();
+        Random random = new Random(14);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int[] scratch = new int[MoveGenerator.MAX_MOVES];
+        for (int i = 1; i < positions.length; i++) {
+            Position position = PieceSetup.initialPosition();
+            for (int ply = 0; ply < 8 * i && !Rules.isGameOver(position); ply++) {
+                int count = MoveGenerator.generateLegal(position, position.getSideToMove(), moves);
+                Rules.play(position, moves[random.nextInt(count)], scratch);
+            }
+            positions[i] = new Position();
+            positions[i].copyFrom(position);
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,261 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Opening book: move statistics per position, built from a game record archive (self-play games
+ * come from Tournament --record) and probed straight from a memory-mapped file.
+ *
+ * The file is an int MAGIC and an int entry count followed by ENTRY_SIZE byte entries sorted by
+ * position key (unsigned) then move: long Zobrist key, then unsigned shorts for the move, its
+ * weight, the games it was played in and how many of those its player won. The weight is games
+ * plus wins, so moves that are both popular and successful are picked more often.
+ *
+ * Usage: java OpeningBook build ARCHIVE BOOK [--plies N] [--min-games N]
+ *        java OpeningBook probe BOOK [MOVE...]
+ */
+public class OpeningBook implements Closeable {
+    public static final int MAGIC = 0x46534242; // "FSBB"
+    public static final int HEADER_SIZE = 2 * Integer.BYTES;
+    public static final int ENTRY_SIZE = 16;
+    public static final int DEFAULT_PLIES = 16;
+    public static final int MAX_ENTRIES = (Integer.MAX_VALUE - HEADER_SIZE) / ENTRY_SIZE; // What one mapping holds
+
+    private final FileChannel channel;
+    private final MappedByteBuffer entries;
+    private final int count;
+
+    public OpeningBook(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("Not an opening book: " + file);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE));
+            if (mapped.getInt(0) != MAGIC) {
+                throw new IOException("Not an opening book: " + file);
+            }
+            count = mapped.getInt(Integer.BYTES);
+            if (count < 0 || count > MAX_ENTRIES || HEADER_SIZE + (long) count * ENTRY_SIZE > size) {
+                throw new IOException("Opening book " + file + " of " + size + " bytes is truncated or corrupt: header says "
+                        + count + " entries");
+            }
+            entries = mapped.slice(HEADER_SIZE, count * ENTRY_SIZE);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Index of the first entry for a position, or of where it would be
+     */
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(entries.getLong(mid * ENTRY_SIZE), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Write the book moves of a position and their weights into the buffers
+     * @return number of moves written
+     */
+    public int findMoves(long key, int[] moves, int[] weights) {
+        int written = 0;
+        for (int i = lowerBound(key); i < count && entries.getLong(i * ENTRY_SIZE) == key && written < moves.length; i++) {
+            moves[written] = move(i);
+            weights[written] = weight(i);
+            written++;
+        }
+        return written;
+    }
+
+    /**
+     * Pick a book move for the side to move with probability proportional to its weight. Moves that
+     * are not legal in the position (a key collision) are never returned. Reads the mapping only,
+     * so one book can serve any number of threads.
+     * @return the move with its flags, or Move.NONE if the position is not in the book
+     */
+    public int choose(RulesEngine rules, Random random) {
+        long key = rules.getPosition().getKey();
+        int first = lowerBound(key);
+        int total = 0;
+        int end = first;
+        for (; end < count && entries.getLong(end * ENTRY_SIZE) == key; end++) {
+            if (rules.isLegal(move(end))) {
+                total += weight(end);
+            }
+        }
+        if (total == 0) {
+            return Move.NONE;
+        }
+
+        int pick = random.nextInt(total);
+        for (int i = first; i < end; i++) {
+            if (!rules.isLegal(move(i))) continue;
+            pick -= weight(i);
+            if (pick < 0) {
+                return move(i);
+            }
+        }
+        return Move.NONE;
+    }
+
+    private int move(int index) {
+        return entries.getShort(index * ENTRY_SIZE + 8) & 0xFFFF;
+    }
+
+    private int weight(int index) {
+        return entries.getShort(index * ENTRY_SIZE + 10) & 0xFFFF;
+    }
+
+    private int games(int index) {
+        return entries.getShort(index * ENTRY_SIZE + 12) & 0xFFFF;
+    }
+
+    private int wins(int index) {
+        return entries.getShort(index * ENTRY_SIZE + 14) & 0xFFFF;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Replay the first plies of every game in an archive and write a book of the moves played at
+     * least minGames times. Games are credited to the mover when the record ends with them winning.
+     * @return number of book entries written
+     */
+    public static int build(GameRecordReader reader, int plies, int minGames, Path file) throws IOException {
+        RulesEngine rules = GameRecordReader.newReplay();
+        Position position = rules.getPosition();
+        try (GameIndexer.EntryList played = new GameIndexer.EntryList()) { // key, move << 1 | won
+            while (reader.next()) {
+                int winner = reader.getResult(); // Never a player after a draw
+                reader.startReplay(rules);
+                int ply = 0;
+                for (int i = 0; i < reader.getEntryCount() && ply < plies; i++) {
+                    int entry = reader.getEntry(i);
+                    if (!GameRecord.isMove(entry)) continue;
+                    int move = rules.findMove(Move.from(entry), Move.to(entry));
+                    if (move == Move.NONE) {
+                        break;
+                    }
+                    int mover = position.getSideToMove();
+                    played.add(position.getKey(), (long) move << 1 | (mover == winner ? 1 : 0));
+                    rules.applyMove(move);
+                    ply++;
+                }
+            }
+            played.sort();
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+                buffer.putInt(MAGIC);
+                buffer.putInt(0); // Entry count, filled in once known
+
+                int written = 0;
+                boolean more = played.next();
+                while (more) {
+                    long key = played.key();
+                    long move = played.value() >>> 1;
+                    int games = 0;
+                    int wins = 0;
+                    do {
+                        games++;
+                        wins += (int) (played.value() & 1);
+                        more = played.next();
+                    } while (more && played.key() == key && played.value() >>> 1 == move);
+                    if (games < minGames) continue;
+
+                    if (written == MAX_ENTRIES) {
+                        throw new IOException("More than " + MAX_ENTRIES + " book entries; raise the minimum games or lower the plies");
+                    }
+                    if (buffer.remaining() < ENTRY_SIZE) {
+                        GameIndexer.drain(channel, buffer);
+                    }
+                    buffer.putLong(key);
+                    buffer.putShort((short) move);
+                    buffer.putShort((short) Math.min(0xFFFF, games + wins));
+                    buffer.putShort((short) Math.min(0xFFFF, games));
+                    buffer.putShort((short) Math.min(0xFFFF, wins));
+                    written++;
+                }
+                GameIndexer.drain(channel, buffer);
+
+                buffer.putInt(MAGIC);
+                buffer.putInt(written);
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, buffer.position());
+                }
+                return written;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("build")) {
+            int plies = DEFAULT_PLIES;
+            int minGames = 2;
+            for (int i = 3; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--plies": plies = Integer.parseInt(args[++i]); break;
+                    case "--min-games": minGames = Integer.parseInt(args[++i]); break;
+                    default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            long start = System.nanoTime();
+            int written;
+            try (GameRecordReader reader = new GameRecordReader(Path.of(args[1]))) {
+                written = build(reader, plies, minGames, Path.of(args[2]));
+            }
+            System.out.println(written + " book entries in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } else if (args.length >= 2 && args[0].equals("probe")) {
+            RulesEngine rules = new RulesEngine();
+            for (int i = 2; i < args.length; i++) {
+                rules.applyMove(GameIndexer.parseMove(rules, args[i]));
+            }
+            try (OpeningBook book = new OpeningBook(Path.of(args[1]))) {
+                long key = rules.getPosition().getKey();
+                for (int i = book.lowerBound(key); i < book.count && book.entries.getLong(i * ENTRY_SIZE) == key; i++) {
+                    System.out.printf("%-8s weight %5d  games %5d  wins %5d%n", Move.toString(book.move(i)),
+                            book.weight(i), book.games(i), book.wins(i));
+                }
+
+                Random random = new Random(1);
+                int probes = 1_000_000;
+                long start = System.nanoTime();
+                int found = 0;
+                for (int i = 0; i < probes; i++) {
+                    if (book.choose(rules, random) != Move.NONE) found++;
+                }
+                System.out.printf("%d of %d probes hit, %.2f us per probe%n", found, probes,
+                        (System.nanoTime() - start) / 1000.0 / probes);
+            }
+        } else {
+            System.err.println("Usage: OpeningBook build ARCHIVE BOOK [--plies N] [--min-games N] | probe BOOK [MOVE...]");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Perft split across a ForkJoinPool. The top plies are expanded into tasks that each own a copy
+ * of the position; below the split depth every task counts its subtree with a sequential Perft.
+ * An optional PerftTable is shared by all workers.
+ *
+ * Usage: java ParallelPerft [depth] [--threads N] [--split PLIES] [--hash MB] [--divide]
+ */
+public class ParallelPerft {
+    private final Position root = new Position();
+    private final int threads;
+    private final int splitDepth;
+    private final PerftTable table;
+
+    /**
+     * @param threads worker count
+     * @param splitDepth plies expanded into separate tasks, at least 1 (the root moves)
+     * @param hashMb shared table size, or 0 for none
+     */
+    public ParallelPerft(Position start, int threads, int splitDepth, int hashMb) {
+        this.root.copyFrom(start);
+        this.threads = threads;
+        this.splitDepth = Math.max(1, splitDepth);
+        this.table = hashMb > 0 ? new PerftTable(hashMb) : null;
+    }
+
+    public long perft(int depth) {
+        return divide(depth, null);
+    }
+
+    /**
+     * Count leaves and, when out is not null, print the count below each root move
+     * @return total leaf count
+     */
+    public long divide(int depth, PrintStream out) {
+        if (depth <= 0 || Rules.isGameOver(root)) {
+            return new Perft(root).perft(depth);
+        }
+
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(root, root.getSideToMove(), moves);
+        List<PerftTask> tasks = new ArrayList<>(count);
+        int[] scratch = new int[MoveGenerator.MAX_MOVES];
+        for (int i = 0; i < count; i++) {
+            tasks.add(new PerftTask(root, moves[i], depth - 1, splitDepth - 1, scratch));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long total = 0;
+            for (PerftTask task : tasks) {
+                pool.execute(task);
+            }
+            for (int i = 0; i < count; i++) {
+                long nodes = tasks.get(i).join();
+                if (out != null) {
+                    out.println(Move.toString(moves[i]) + ": " + nodes);
+                }
+                total += nodes;
+            }
+            return total;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Counts the subtree below one move from its own copy of the parent position
+     */
+    private class PerftTask extends RecursiveTask<Long> {
+        private final Position position = new Position();
+        private final int depth;
+        private final int splitDepth;
+
+        PerftTask(Position parent, int move, int depth, int splitDepth, int[] scratch) {
+            position.copyFrom(parent);
+            Rules.play(position, move, scratch);
+            this.depth = depth;
+            this.splitDepth = splitDepth;
+        }
+
+        @Override
+        protected Long compute() {
+            if (splitDepth <= 0 || depth <= 1 || Rules.isGameOver(position)) {
+                Perft perft = new Perft(position);
+                perft.setTable(table);
+                return perft.perft(depth);
+            }
+
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int[] scratch = new int[MoveGenerator.MAX_MOVES];
+            int count = MoveGenerator.generateLegal(position, position.getSideToMove(), moves);
+            List<PerftTask> children = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                children.add(new PerftTask(position, moves[i], depth - 1, splitDepth - 1, scratch));
+            }
+            invokeAll(children);
+
+            long nodes = 0;
+            for (PerftTask child : children) {
+                nodes += child.join();
+            }
+            return nodes;
+        }
+    }
+
+    public static void main(String[] args) {
+        int depth = 7;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int split = 2;
+        int hashMb = 0;
+        boolean divide = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--split": split = Integer.parseInt(args[++i]); break;
+                case "--hash": hashMb = Integer.parseInt(args[++i]); break;
+                case "--divide": divide = true; break;
+                default: depth = Integer.parseInt(args[i]);
+            }
+        }
+
+        ParallelPerft perft = new ParallelPerft(PieceSetup.initialPosition(), threads, split, hashMb);
+        long start = System.nanoTime();
+        long nodes = perft.divide(depth, divide ? System.out : null);
+        long elapsed = System.nanoTime() - start;
+
+        if (divide) {
+            System.out.println();
+        }
+        System.out.println("perft(" + depth + ") = " + nodes + " in " + elapsed / 1_000_000 + " ms, "
+                + Perft.nodesPerSecond(nodes, elapsed) + " nps on " + threads + " threads");
+        if (depth < Perft.START_POSITION_COUNTS.length && nodes != Perft.START_POSITION_COUNTS[depth]) {
+            System.out.println("Mismatch: expected " + Perft.START_POSITION_COUNTS[depth]);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lazy SMP search: one main engine and N-1 helper engines search the same root on separate
+ * threads and share one TranspositionTable. Helpers only feed the table (with staggered depths and
+ * rotated root moves so they explore different parts of the tree first); the main engine's result
+ * is returned with the node count of all threads. With one thread this is exactly SearchEngine.
+ * The helper threads are started once and reused by every search, as simulations search once per
+ * move; close releases them.
+ *
+ * Usage: java ParallelSearch [MAXN|PARANOID|BRS] [depth] [--time MS] [--threads N] [--hash MB]
+ */
+public class ParallelSearch implements Closeable {
+    private final SearchEngine[] engines;
+    private final TranspositionTable table;
+    private final ExecutorService helpers;
+    private final AtomicBoolean stopSignal = new AtomicBoolean();
+
+    /**
+     * @param threads number of searching threads, including the main one
+     * @param hashMb shared table size
+     */
+    public ParallelSearch(SearchAlgorithm algorithm, int threads, int hashMb) {
+        table = new TranspositionTable(hashMb);
+        engines = new SearchEngine[Math.max(1, threads)];
+        for (int i = 0; i < engines.length; i++) {
+            engines[i] = new SearchEngine(algorithm, table);
+            engines[i].setHelperIndex(i);
+            engines[i].setStopSignal(stopSignal);
+        }
+        helpers = engines.length > 1 ? Executors.newFixedThreadPool(engines.length - 1, task -> {
+            Thread thread = new Thread(task, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    public int getThreadCount() {
+        return engines.length;
+    }
+
+    /**
+     * Search for the side to move of a position, which is left unchanged
+     */
+    public SearchResult search(Position start, SearchLimits limits) {
+        return search(start, limits, null);
+    }
+
+    /**
+     * Search a position reached by a game, see SearchEngine.search; every engine copies the
+     * history, which must not change until the search returns
+     */
+    public SearchResult search(Position start, SearchLimits limits, PositionHistory gameHistory) {
+        // The node budget applies to the main engine; helpers run until it finishes
+        SearchLimits helperLimits = new SearchLimits(limits.getMaxDepth(), limits.getTimeMillis(), 0);
+        List<Future<Long>> helperNodes = new ArrayList<>(engines.length - 1);
+
+        // Age the table before any engine stores, so helper entries belong to this search
+        table.newSearch();
+        stopSignal.set(false);
+        for (int i = 1; i < engines.length; i++) {
+            SearchEngine engine = engines[i];
+            helperNodes.add(helpers.submit(() -> engine.search(start, helperLimits, gameHistory).getNodes()));
+        }
+
+        SearchResult result = engines[0].search(start, limits, gameHistory);
+        stopSignal.set(true);
+
+        long nodes = result.getNodes();
+        for (Future<Long> helper : helperNodes) {
+            try {
+                nodes += helper.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search helper failed", e.getCause());
+            }
+        }
+        return new SearchResult(result.getBestMove(), result.getPrincipalVariation(), result.getScore(),
+                result.getDepth(), nodes, result.getTimeMillis());
+    }
+
+    @Override
+    public void close() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args) {
+        SearchAlgorithm algorithm = SearchAlgorithm.PARANOID;
+        int depth = 8;
+        long time = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int hashMb = 64;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--time": time = Long.parseLong(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--hash": hashMb = Integer.parseInt(args[++i]); break;
+                default:
+                    if (Character.isDigit(args[i].charAt(0))) {
+                        depth = Integer.parseInt(args[i]);
+                    } else {
+                        algorithm = SearchAlgorithm.valueOf(args[i]);
+                    }
+            }
+        }
+
+        try (ParallelSearch search = new ParallelSearch(algorithm, threads, hashMb)) {
+            System.out.println(search.search(PieceSetup.initialPosition(), new SearchLimits(depth, time, 0))
+                    + " threads " + threads);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import java.io.PrintStream;
+
+/**
+ * Counts leaf nodes of the legal move tree to a fixed depth, following the full turn rules
+ * (eliminations, army transfers and skipped players). Used to regression-test move generation.
+ * A finished game (one player left) is treated as a leaf with no further moves.
+ *
+ * Usage: java Perft [depth] [--divide] [--verify]
+ */
+public class Perft {
+    /** Leaf counts from the PieceSetup start position, indexed by depth */
+    public static final long[] START_POSITION_COUNTS = {1L, 7L, 49L, 343L, 2_401L, 21_952L, 198_842L};
+
+    private final Position position = new Position();
+    private int[][] moves = new int[0][];
+    private int[] scratch = new int[MoveGenerator.MAX_MOVES];
+    private PerftTable table;
+
+    public Perft(Position start) {
+        position.copyFrom(start);
+    }
+
+    /**
+     * Cache subtree counts in a table, which may be shared with other Perft instances
+     */
+    public void setTable(PerftTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Start from the PieceSetup position with Spring to move
+     */
+    public static Perft fromStartPosition() {
+        return new Perft(PieceSetup.initialPosition());
+    }
+
+    public long perft(int depth) {
+        ensureBuffers(depth);
+        return count(depth);
+    }
+
+    /**
+     * Print the leaf count below each root move, then the total and the speed
+     * @return total leaf count
+     */
+    public long divide(int depth, PrintStream out) {
+        ensureBuffers(depth);
+        long start = System.nanoTime();
+        long total = 0;
+
+        if (depth > 0 && !Rules.isGameOver(position)) {
+            int[] rootMoves = moves[depth];
+            int count = MoveGenerator.generateLegal(position, position.getSideToMove(), rootMoves);
+            for (int i = 0; i < count; i++) {
+                Rules.play(position, rootMoves[i], scratch);
+                long nodes = count(depth - 1);
+                position.unmake();
+
+                out.println(Move.toString(rootMoves[i]) + ": " + nodes);
+                total += nodes;
+            }
+        } else {
+            total = count(depth);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        out.println();
+        out.println("Nodes: " + total);
+        out.println("Time: " + elapsed / 1_000_000 + " ms, " + nodesPerSecond(total, elapsed) + " nps");
+        return total;
+    }
+
+    private long count(int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        if (Rules.isGameOver(position)) {
+            return 0;
+        }
+
+        int[] buffer = moves[depth];
+        if (depth == 1) {
+            // Bulk count the leaves without making them
+            return MoveGenerator.generateLegal(position, position.getSideToMove(), buffer);
+        }
+
+        long key = 0;
+        if (table != null) {
+            key = position.getKey();
+            long cached = table.probe(key, depth);
+            if (cached >= 0) {
+                return cached;
+            }
+        }
+
+        int count = MoveGenerator.generateLegal(position, position.getSideToMove(), buffer);
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            Rules.play(position, buffer[i], scratch);
+            nodes += count(depth - 1);
+            position.unmake();
+        }
+
+        if (table != null) {
+            table.store(key, depth, nodes);
+        }
+        return nodes;
+    }
+
+    private void ensureBuffers(int depth) {
+        if (moves.length <= depth) {
+            moves = new int[depth + 1][MoveGenerator.MAX_MOVES];
+        }
+    }
+
+    static long nodesPerSecond(long nodes, long elapsedNanos) {
+        return elapsedNanos > 0 ? nodes * 1_000_000_000L / elapsedNanos : 0;
+    }
+
+    public static void main(String[] args) {
+        int depth = 5;
+        boolean divide = false;
+        boolean verify = false;
+        for (String arg : args) {
+            if (arg.equals("--divide")) {
+                divide = true;
+            } else if (arg.equals("--verify")) {
+                verify = true;
+            } else {
+                depth = Integer.parseInt(arg);
+            }
+        }
+
+        if (verify) {
+            boolean passed = true;
+            for (int d = 1; d < START_POSITION_COUNTS.length && d <= depth; d++) {
+                long start = System.nanoTime();
+                long nodes = fromStartPosition().perft(d);
+                long elapsed = System.nanoTime() - start;
+                boolean ok = nodes == START_POSITION_COUNTS[d];
+                passed &= ok;
+                System.out.println("perft(" + d + ") = " + nodes + (ok ? " ok" : " expected " + START_POSITION_COUNTS[d])
+                        + " (" + nodesPerSecond(nodes, elapsed) + " nps)");
+            }
+            if (!passed) {
+                System.exit(1);
+            }
+        } else if (divide) {
+            fromStartPosition().divide(depth, System.out);
+        } else {
+            long start = System.nanoTime();
+            long nodes = fromStartPosition().perft(depth);
+            long elapsed = System.nanoTime() - start;
+            System.out.println("perft(" + depth + ") = " + nodes + " in " + elapsed / 1_000_000 + " ms, "
+                    + nodesPerSecond(nodes, elapsed) + " nps");
+        }
+    }
+}
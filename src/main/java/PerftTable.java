@@ -0,0 +1,38 @@
+/**
+ * Fixed-size perft cache shared between threads without locks. Each slot stores the key XORed
+ * with its data word, so a slot torn by a concurrent write fails verification and reads as a miss.
+ */
+public class PerftTable {
+    private static final int DEPTH_BITS = 8;
+
+    private final long[] keys;
+    private final long[] data; // count << DEPTH_BITS | depth
+    private final int mask;
+
+    public PerftTable(int sizeMb) {
+        long slots = Math.max(1L, (long) sizeMb * 1024 * 1024 / 16);
+        int size = Integer.highestOneBit((int) Math.min(slots, 1 << 30));
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+    }
+
+    /**
+     * @return the stored leaf count, or -1 on a miss
+     */
+    public long probe(long key, int depth) {
+        int index = (int) key & mask;
+        long entry = data[index];
+        if ((keys[index] ^ entry) == key && (entry & ((1 << DEPTH_BITS) - 1)) == depth) {
+            return entry >>> DEPTH_BITS;
+        }
+        return -1;
+    }
+
+    public void store(long key, int depth, long count) {
+        int index = (int) key & mask;
+        long entry = (count << DEPTH_BITS) | depth;
+        data[index] = entry;
+        keys[index] = key ^ entry;
+    }
+}
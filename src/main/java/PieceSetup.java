@@ -1,8 +1,18 @@
 public class PieceSetup {
     private final Board board;
+    private final Position position;
 
     public PieceSetup(Board board) {
         this.board = board;
+        this.position = null;
+    }
+
+    /**
+     * Set up a bare Position without creating Piece objects, for headless tools
+     */
+    public PieceSetup(Position position) {
+        this.board = null;
+        this.position = position;
     }
 
     public void setupInitialPieces() {
@@ -14,49 +24,66 @@ public class PieceSetup {
 
     private void setupSummer() {
         // SUMMER (top left corner, rows 0-2, cols 0-2)
-        board.setPiece(1, 0, new Piece(PieceType.ROOK, Player.SUMMER));
-        board.setPiece(0, 0, new Piece(PieceType.KING, Player.SUMMER));
-        board.setPiece(1, 1, new Piece(PieceType.ELEPHANT, Player.SUMMER));
-        board.setPiece(0, 1, new Piece(PieceType.KNIGHT, Player.SUMMER));
-        board.setPiece(0, 2, new Piece(PieceType.PAWN, Player.SUMMER));
-        board.setPiece(1, 2, new Piece(PieceType.PAWN, Player.SUMMER));
-        board.setPiece(2, 1, new Piece(PieceType.PAWN, Player.SUMMER));
-        board.setPiece(2, 0, new Piece(PieceType.PAWN, Player.SUMMER));
+        place(1, 0, PieceType.ROOK, Player.SUMMER);
+        place(0, 0, PieceType.KING, Player.SUMMER);
+        place(1, 1, PieceType.ELEPHANT, Player.SUMMER);
+        place(0, 1, PieceType.KNIGHT, Player.SUMMER);
+        place(0, 2, PieceType.PAWN, Player.SUMMER);
+        place(1, 2, PieceType.PAWN, Player.SUMMER);
+        place(2, 1, PieceType.PAWN, Player.SUMMER);
+        place(2, 0, PieceType.PAWN, Player.SUMMER);
     }
 
     private void setupWinter() {
         // WINTER (bottom right corner, rows 5-7, cols 5-7)
-        board.setPiece(6, 7, new Piece(PieceType.ROOK, Player.WINTER));
-        board.setPiece(7, 7, new Piece(PieceType.KING, Player.WINTER));
-        board.setPiece(6, 6, new Piece(PieceType.ELEPHANT, Player.WINTER));
-        board.setPiece(7, 6, new Piece(PieceType.KNIGHT, Player.WINTER));
-        board.setPiece(7, 5, new Piece(PieceType.PAWN, Player.WINTER));
-        board.setPiece(6, 5, new Piece(PieceType.PAWN, Player.WINTER));
-        board.setPiece(5, 6, new Piece(PieceType.PAWN, Player.WINTER));
-        board.setPiece(5, 7, new Piece(PieceType.PAWN, Player.WINTER));
+        place(6, 7, PieceType.ROOK, Player.WINTER);
+        place(7, 7, PieceType.KING, Player.WINTER);
+        place(6, 6, PieceType.ELEPHANT, Player.WINTER);
+        place(7, 6, PieceType.KNIGHT, Player.WINTER);
+        place(7, 5, PieceType.PAWN, Player.WINTER);
+        place(6, 5, PieceType.PAWN, Player.WINTER);
+        place(5, 6, PieceType.PAWN, Player.WINTER);
+        place(5, 7, PieceType.PAWN, Player.WINTER);
     }
 
     private void setupFall() {
         // FALL (bottom left corner, rows 5-7, cols 0-2)
-        board.setPiece(6, 0, new Piece(PieceType.ROOK, Player.FALL));
-        board.setPiece(7, 0, new Piece(PieceType.KING, Player.FALL));
-        board.setPiece(6, 1, new Piece(PieceType.ELEPHANT, Player.FALL));
-        board.setPiece(7, 1, new Piece(PieceType.KNIGHT, Player.FALL));
-        board.setPiece(5, 0, new Piece(PieceType.PAWN, Player.FALL));
-        board.setPiece(5, 1, new Piece(PieceType.PAWN, Player.FALL));
-        board.setPiece(6, 2, new Piece(PieceType.PAWN, Player.FALL));
-        board.setPiece(7, 2, new Piece(PieceType.PAWN, Player.FALL));
+        place(6, 0, PieceType.ROOK, Player.FALL);
+        place(7, 0, PieceType.KING, Player.FALL);
+        place(6, 1, PieceType.ELEPHANT, Player.FALL);
+        place(7, 1, PieceType.KNIGHT, Player.FALL);
+        place(5, 0, PieceType.PAWN, Player.FALL);
+        place(5, 1, PieceType.PAWN, Player.FALL);
+        place(6, 2, PieceType.PAWN, Player.FALL);
+        place(7, 2, PieceType.PAWN, Player.FALL);
     }
 
     private void setupSpring() {
         // SPRING (top right corner, rows 0-2, cols 5-7)
-        board.setPiece(1, 7, new Piece(PieceType.ROOK, Player.SPRING));
-        board.setPiece(0, 7, new Piece(PieceType.KING, Player.SPRING));
-        board.setPiece(1, 6, new Piece(PieceType.ELEPHANT, Player.SPRING));
-        board.setPiece(0, 6, new Piece(PieceType.KNIGHT, Player.SPRING));
-        board.setPiece(0, 5, new Piece(PieceType.PAWN, Player.SPRING));
-        board.setPiece(1, 5, new Piece(PieceType.PAWN, Player.SPRING));
-        board.setPiece(2, 6, new Piece(PieceType.PAWN, Player.SPRING));
-        board.setPiece(2, 7, new Piece(PieceType.PAWN, Player.SPRING));
-    }
-}
\ No newline at end of file
+        place(1, 7, PieceType.ROOK, Player.SPRING);
+        place(0, 7, PieceType.KING, Player.SPRING);
+        place(1, 6, PieceType.ELEPHANT, Player.SPRING);
+        place(0, 6, PieceType.KNIGHT, Player.SPRING);
+        place(0, 5, PieceType.PAWN, Player.SPRING);
+        place(1, 5, PieceType.PAWN, Player.SPRING);
+        place(2, 6, PieceType.PAWN, Player.SPRING);
+        place(2, 7, PieceType.PAWN, Player.SPRING);
+    }
+
+    private void place(int row, int col, PieceType type, Player player) {
+        if (board != null) {
+            board.setPiece(row, col, new Piece(type, player));
+        } else {
+            position.put(Position.square(row, col), Position.encode(type.ordinal(), player.ordinal(), player.ordinal()));
+        }
+    }
+
+    /**
+     * Create the start position with Spring to move
+     */
+    public static Position initialPosition() {
+        Position position = new Position();
+        new PieceSetup(position).setupInitialPieces();
+        return position;
+    }
+}
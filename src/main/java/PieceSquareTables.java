@@ -0,0 +1,74 @@
+/**
+ * Material plus piece-square values by piece code and square, in centipawns for the piece's
+ * controller. Tables are oriented to the original owner's home corner, and pawn values follow the
+ * owner's split direction from MoveValidator.getPawnForwardDelta.
+ */
+public final class PieceSquareTables {
+    public static final int[][] VALUE = new int[128][Position.SQUARES]; // By piece code and square
+
+    private static final int KING = PieceType.KING.ordinal();
+    private static final int ROOK = PieceType.ROOK.ordinal();
+    private static final int ELEPHANT = PieceType.ELEPHANT.ordinal();
+    private static final int KNIGHT = PieceType.KNIGHT.ordinal();
+    private static final int PAWN = PieceType.PAWN.ordinal();
+    private static final int GENERAL = PieceType.GENERAL.ordinal();
+
+    static {
+        for (int type = 0; type < Position.TYPE_COUNT; type++) {
+            for (int owner = 0; owner < Position.PLAYER_COUNT; owner++) {
+                for (int sq = 0; sq < Position.SQUARES; sq++) {
+                    int value = Evaluation.PIECE_VALUES[type] + bonus(type, owner, Position.row(sq), Position.col(sq));
+                    for (int controller = 0; controller < Position.PLAYER_COUNT; controller++) {
+                        VALUE[Position.encode(type, owner, controller)][sq] = value;
+                    }
+                }
+            }
+        }
+    }
+
+    private PieceSquareTables() {
+    }
+
+    private static int bonus(int type, int owner, int r, int c) {
+        // Distance from the board centre (0-3) and from the owner's home corner (0-7)
+        int centre = Math.max(Math.abs(2 * r - 7), Math.abs(2 * c - 7)) / 2;
+        int home = homeDistance(Position.PLAYERS[owner], r, c);
+
+        if (type == KING) return Math.max(0, 3 - home) * 10; // Stay tucked in the home corner
+        if (type == KNIGHT) return (3 - centre) * 10;
+        if (type == GENERAL) return (3 - centre) * 6;
+        if (type == ELEPHANT) return (3 - centre) * 4;
+        if (type == ROOK) return (3 - centre) * 2;
+        if (type == PAWN) return pawnBonus(owner, r, c);
+        return 0;
+    }
+
+    private static int homeDistance(Player player, int r, int c) {
+        switch (player) {
+            case SUMMER: return Math.max(r, c); // Top left
+            case SPRING: return Math.max(r, 7 - c); // Top right
+            case FALL: return Math.max(7 - r, c); // Bottom left
+            case WINTER: return Math.max(7 - r, 7 - c); // Bottom right
+        }
+        return 0;
+    }
+
+    /**
+     * Reward a pawn by how few steps it needs to promote along its owner's path; a pawn whose path
+     * runs off the board without promoting gets nothing
+     */
+    private static int pawnBonus(int owner, int r, int c) {
+        for (int steps = 1; steps < Board.SIZE * 2; steps++) {
+            int[] delta = MoveValidator.getPawnForwardDelta(owner, r, c);
+            r += delta[0];
+            c += delta[1];
+            if (r < 0 || r >= Board.SIZE || c < 0 || c >= Board.SIZE || (delta[0] == 0 && delta[1] == 0)) {
+                return 0;
+            }
+            if ((Attacks.PROMOTION[owner] & (1L << Position.square(r, c))) != 0) {
+                return Math.max(0, 7 - steps) * 10;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,452 @@
+import java.util.Arrays;
+
+/**
+ * Bitboard model of the board state. Squares are indexed row * 8 + col, so bit i of every
+ * mask is square i and row-major scanning order matches the lowest set bit first.
+ */
+public class Position {
+    public static final int SQUARES = Board.SIZE * Board.SIZE;
+    public static final int PLAYER_COUNT = 4;
+    public static final int TYPE_COUNT = 6;
+    public static final int EMPTY = 0;
+    public static final int ALL_PLAYERS = (1 << PLAYER_COUNT) - 1; // Bit set of player ordinals
+
+    static final Player[] PLAYERS = Player.values();
+    static final PieceType[] TYPES = PieceType.values();
+
+    private final long[][] pieces = new long[PLAYER_COUNT][TYPE_COUNT]; // By original owner and type
+    private final long[] occupancy = new long[PLAYER_COUNT]; // By controlling player
+    private long occupied;
+    private final byte[] squares = new byte[SQUARES]; // Piece code per square, EMPTY if vacant
+    private int sideToMove;
+    private int eliminated; // Bit set of eliminated player ordinals
+    private long key = Zobrist.SIDE[0];
+    private final int[] scores = new int[PLAYER_COUNT]; // Material plus piece-square value by controller
+
+    // Undo stack, one frame per made move, preallocated so make/unmake never allocate
+    private static final int MAX_ELIMINATIONS = PLAYER_COUNT - 1; // Per frame
+    private int ply;
+    private int[] undoMove;
+    private int[] undoMoved; // Moving piece code before any promotion
+    private int[] undoCaptured;
+    private int[] undoSide;
+    private int[] undoEliminated;
+    private long[] undoKey;
+    private int[] undoEliminationCount;
+    private int[] undoKingSquare; // MAX_ELIMINATIONS slots per frame
+    private int[] undoKingCode;
+    private long[] undoControllers; // Loser's pieces by previous controller, PLAYER_COUNT masks per slot
+
+    public Position() {
+        this(256);
+    }
+
+    /**
+     * @param undoCapacity initial number of undo frames; the stack grows if a line goes deeper
+     */
+    public Position(int undoCapacity) {
+        allocateUndo(Math.max(1, undoCapacity));
+    }
+
+    public static int square(int row, int col) {
+        return row * Board.SIZE + col;
+    }
+
+    public static int row(int square) {
+        return square >>> 3;
+    }
+
+    public static int col(int square) {
+        return square & 7;
+    }
+
+    /**
+     * Pack a piece into a non-zero code: bits 0-2 hold type + 1, bits 3-4 the original owner
+     * and bits 5-6 the controlling player
+     */
+    public static int encode(int type, int owner, int controller) {
+        return (type + 1) | (owner << 3) | (controller << 5);
+    }
+
+    public static int encode(Piece piece) {
+        return encode(piece.getType().ordinal(), piece.getPlayer().ordinal(),
+                piece.getControllingPlayer().ordinal());
+    }
+
+    public static int typeOf(int code) {
+        return (code & 7) - 1;
+    }
+
+    public static int ownerOf(int code) {
+        return (code >>> 3) & 3;
+    }
+
+    public static int controllerOf(int code) {
+        return (code >>> 5) & 3;
+    }
+
+    /**
+     * Place a piece code on an empty square
+     */
+    public void put(int square, int code) {
+        long bit = 1L << square;
+        pieces[ownerOf(code)][typeOf(code)] |= bit;
+        occupancy[controllerOf(code)] |= bit;
+        occupied |= bit;
+        squares[square] = (byte) code;
+        key ^= Zobrist.PIECE[code][square];
+        scores[controllerOf(code)] += PieceSquareTables.VALUE[code][square];
+    }
+
+    /**
+     * Remove whatever stands on a square
+     * @return the removed piece code, or EMPTY
+     */
+    public int remove(int square) {
+        int code = squares[square];
+        if (code != EMPTY) {
+            long mask = ~(1L << square);
+            pieces[ownerOf(code)][typeOf(code)] &= mask;
+            occupancy[controllerOf(code)] &= mask;
+            occupied &= mask;
+            squares[square] = EMPTY;
+            key ^= Zobrist.PIECE[code][square];
+            scores[controllerOf(code)] -= PieceSquareTables.VALUE[code][square];
+        }
+        return code;
+    }
+
+    public void set(int square, int code) {
+        remove(square);
+        if (code != EMPTY) {
+            put(square, code);
+        }
+    }
+
+    public void clear() {
+        for (int p = 0; p < PLAYER_COUNT; p++) {
+            for (int t = 0; t < TYPE_COUNT; t++) {
+                pieces[p][t] = 0L;
+            }
+            occupancy[p] = 0L;
+            scores[p] = 0;
+        }
+        occupied = 0L;
+        for (int sq = 0; sq < SQUARES; sq++) {
+            squares[sq] = EMPTY;
+        }
+        sideToMove = 0;
+        eliminated = 0;
+        key = Zobrist.SIDE[0];
+        ply = 0;
+    }
+
+    /**
+     * Copy the board, side to move and eliminated players of another position. The undo stack
+     * starts empty, so the copy cannot take back moves made before it was taken.
+     */
+    public void copyFrom(Position other) {
+        for (int p = 0; p < PLAYER_COUNT; p++) {
+            System.arraycopy(other.pieces[p], 0, pieces[p], 0, TYPE_COUNT);
+        }
+        System.arraycopy(other.occupancy, 0, occupancy, 0, PLAYER_COUNT);
+        System.arraycopy(other.scores, 0, scores, 0, PLAYER_COUNT);
+        System.arraycopy(other.squares, 0, squares, 0, SQUARES);
+        occupied = other.occupied;
+        sideToMove = other.sideToMove;
+        eliminated = other.eliminated;
+        key = other.key;
+        ply = 0;
+    }
+
+    public int pieceAt(int square) {
+        return squares[square];
+    }
+
+    public boolean isEmpty(int square) {
+        return squares[square] == EMPTY;
+    }
+
+    /**
+     * Pieces originally owned by a player, whoever controls them now
+     */
+    public long getPieces(int owner, int type) {
+        return pieces[owner][type];
+    }
+
+    /**
+     * All pieces of a type regardless of owner
+     */
+    public long getPieces(int type) {
+        return pieces[0][type] | pieces[1][type] | pieces[2][type] | pieces[3][type];
+    }
+
+    /**
+     * Pieces currently controlled by a player, including inherited ones
+     */
+    public long getOccupancy(int controller) {
+        return occupancy[controller];
+    }
+
+    public long getOccupied() {
+        return occupied;
+    }
+
+    /**
+     * Find the king a player controls, scanning in row-major order like the cell grid
+     * @return the king square, or -1 if the player has no king
+     */
+    public int kingSquare(int player) {
+        long kings = getPieces(PieceType.KING.ordinal()) & occupancy[player];
+        return kings != 0 ? Long.numberOfTrailingZeros(kings) : -1;
+    }
+
+    /**
+     * Check if any piece controlled by one of the given players attacks a square. Works backwards
+     * from the square, so the cost is one lookup per attack type rather than per piece.
+     * @param byPlayers bit set of controlling player ordinals
+     */
+    public boolean isSquareAttacked(int square, int byPlayers) {
+        return attackersTo(square, byPlayers) != 0L;
+    }
+
+    /**
+     * Get every piece controlled by one of the given players that attacks a square
+     * @param byPlayers bit set of controlling player ordinals
+     */
+    public long attackersTo(int square, int byPlayers) {
+        long candidates = 0L;
+        for (int p = 0; p < PLAYER_COUNT; p++) {
+            if ((byPlayers & (1 << p)) != 0) {
+                candidates |= occupancy[p];
+            }
+        }
+        if (candidates == 0L) return 0L;
+
+        long attackers = Attacks.KING[square] & getPieces(PieceType.KING.ordinal())
+                | Attacks.KNIGHT[square] & getPieces(PieceType.KNIGHT.ordinal())
+                | Attacks.ELEPHANT[square] & getPieces(PieceType.ELEPHANT.ordinal())
+                | Attacks.GENERAL[square] & getPieces(PieceType.GENERAL.ordinal())
+                | RookAttacks.attacks(square, occupied) & getPieces(PieceType.ROOK.ordinal());
+
+        // Pawns capture in their original owner's direction, whoever controls them now
+        int pawn = PieceType.PAWN.ordinal();
+        for (int owner = 0; owner < PLAYER_COUNT; owner++) {
+            attackers |= Attacks.PAWN_ATTACKERS[owner][square] & pieces[owner][pawn];
+        }
+        return attackers & candidates;
+    }
+
+    /**
+     * Get the Zobrist key of the board, side to move and eliminated players, kept up to date incrementally
+     */
+    public long getKey() {
+        return key;
+    }
+
+    /**
+     * Recompute the Zobrist key from scratch, for verifying the incremental one
+     */
+    public long computeKey() {
+        long fresh = Zobrist.SIDE[sideToMove] ^ Zobrist.eliminated(eliminated);
+        long pieces = occupied;
+        while (pieces != 0) {
+            int sq = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            fresh ^= Zobrist.PIECE[squares[sq]][sq];
+        }
+        return fresh;
+    }
+
+    /**
+     * Get the material plus piece-square score of the pieces a player controls, kept up to date
+     * incrementally through moves, promotions and army transfers
+     */
+    public int getScore(int player) {
+        return scores[player];
+    }
+
+    /**
+     * Recompute a player's score from scratch, for verifying the incremental one
+     */
+    public int computeScore(int player) {
+        int fresh = 0;
+        long pieces = occupancy[player];
+        while (pieces != 0) {
+            int sq = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            fresh += PieceSquareTables.VALUE[squares[sq]][sq];
+        }
+        return fresh;
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(int player) {
+        key ^= Zobrist.SIDE[sideToMove] ^ Zobrist.SIDE[player];
+        this.sideToMove = player;
+    }
+
+    /**
+     * @return bit set of eliminated player ordinals
+     */
+    public int getEliminated() {
+        return eliminated;
+    }
+
+    public void setEliminated(int eliminated) {
+        key ^= Zobrist.eliminated(this.eliminated ^ eliminated);
+        this.eliminated = eliminated;
+    }
+
+    public boolean isEliminated(int player) {
+        return (eliminated & (1 << player)) != 0;
+    }
+
+    public int getActivePlayerCount() {
+        return PLAYER_COUNT - Integer.bitCount(eliminated);
+    }
+
+    /**
+     * Number of frames on the undo stack
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * Drop every undo frame, for a game that never takes its moves back
+     */
+    public void clearUndo() {
+        ply = 0;
+    }
+
+    /**
+     * Make a move and push an undo frame. Pawns reaching their owner's promotion squares become
+     * GENERALs. The side to move is left alone until advanceTurn.
+     */
+    public void make(int move) {
+        if (ply == undoMove.length) {
+            allocateUndo(ply * 2);
+        }
+        int from = Move.from(move);
+        int to = Move.to(move);
+        undoKey[ply] = key;
+        int code = remove(from);
+        int captured = remove(to);
+
+        undoMove[ply] = move;
+        undoMoved[ply] = code;
+        undoCaptured[ply] = captured;
+        undoSide[ply] = sideToMove;
+        undoEliminated[ply] = eliminated;
+        undoEliminationCount[ply] = 0;
+        ply++;
+
+        if (typeOf(code) == PieceType.PAWN.ordinal() && (Attacks.PROMOTION[ownerOf(code)] & (1L << to)) != 0) {
+            code = encode(PieceType.GENERAL.ordinal(), ownerOf(code), controllerOf(code));
+        }
+        put(to, code);
+    }
+
+    /**
+     * Eliminate a player as part of the last made move: remove their king and hand every piece
+     * they originally owned to the victor. Undone together with that move.
+     */
+    public void eliminate(int loser, int victor) {
+        if (ply == 0) {
+            throw new IllegalStateException("Eliminations must follow a move");
+        }
+        int frame = ply - 1;
+        int slot = frame * MAX_ELIMINATIONS + undoEliminationCount[frame]++;
+
+        int kingSquare = kingSquare(loser);
+        undoKingSquare[slot] = kingSquare;
+        undoKingCode[slot] = kingSquare >= 0 ? remove(kingSquare) : EMPTY;
+        eliminated |= 1 << loser;
+        key ^= Zobrist.ELIMINATED[loser];
+
+        long owned = 0L;
+        for (int t = 0; t < TYPE_COUNT; t++) {
+            owned |= pieces[loser][t];
+        }
+        for (int c = 0; c < PLAYER_COUNT; c++) {
+            undoControllers[slot * PLAYER_COUNT + c] = owned & occupancy[c];
+        }
+        setController(owned, victor);
+    }
+
+    /**
+     * Pass the turn to the next player, skipping eliminated players while more than one remains
+     */
+    public void advanceTurn() {
+        key ^= Zobrist.SIDE[sideToMove];
+        do {
+            sideToMove = (sideToMove + 1) % PLAYER_COUNT;
+        } while (isEliminated(sideToMove) && getActivePlayerCount() > 1);
+        key ^= Zobrist.SIDE[sideToMove];
+    }
+
+    /**
+     * Take back the last made move together with the eliminations and turn change that followed it
+     */
+    public void unmake() {
+        int frame = --ply;
+
+        for (int i = undoEliminationCount[frame] - 1; i >= 0; i--) {
+            int slot = frame * MAX_ELIMINATIONS + i;
+            for (int c = 0; c < PLAYER_COUNT; c++) {
+                setController(undoControllers[slot * PLAYER_COUNT + c], c);
+            }
+            if (undoKingSquare[slot] >= 0) {
+                put(undoKingSquare[slot], undoKingCode[slot]);
+            }
+        }
+
+        int move = undoMove[frame];
+        remove(Move.to(move));
+        put(Move.from(move), undoMoved[frame]);
+        if (undoCaptured[frame] != EMPTY) {
+            put(Move.to(move), undoCaptured[frame]);
+        }
+        sideToMove = undoSide[frame];
+        eliminated = undoEliminated[frame];
+        key = undoKey[frame];
+    }
+
+    /**
+     * Get the move that created the frame at a given stack depth
+     */
+    public int getMove(int frame) {
+        return undoMove[frame];
+    }
+
+    private void setController(long mask, int controller) {
+        while (mask != 0) {
+            int sq = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+            int code = remove(sq);
+            put(sq, encode(typeOf(code), ownerOf(code), controller));
+        }
+    }
+
+    private void allocateUndo(int capacity) {
+        undoMove = grow(undoMove, capacity);
+        undoMoved = grow(undoMoved, capacity);
+        undoCaptured = grow(undoCaptured, capacity);
+        undoSide = grow(undoSide, capacity);
+        undoEliminated = grow(undoEliminated, capacity);
+        undoKey = undoKey == null ? new long[capacity] : Arrays.copyOf(undoKey, capacity);
+        undoEliminationCount = grow(undoEliminationCount, capacity);
+        undoKingSquare = grow(undoKingSquare, capacity * MAX_ELIMINATIONS);
+        undoKingCode = grow(undoKingCode, capacity * MAX_ELIMINATIONS);
+        undoControllers = undoControllers == null ? new long[capacity * MAX_ELIMINATIONS * PLAYER_COUNT]
+                : Arrays.copyOf(undoControllers, capacity * MAX_ELIMINATIONS * PLAYER_COUNT);
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+    }
+}
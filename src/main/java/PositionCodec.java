@@ -0,0 +1,236 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Text and binary forms of a position.
+ *
+ * Text: eight rows from row 0 down to row 7 separated by '/', then the side to move and the
+ * eliminated players ('-' for none), separated by spaces. A row lists its squares from column 0:
+ * a digit counts empty squares, and a piece is its type letter (K R E N P G) followed by its
+ * owner's letter (s Spring, u Summer, f Fall, w Winter), plus '>' and the controller's letter
+ * when another player controls it. The start position is
+ * "KuNuPu2PsNsKs/RuEuPu2PsEsRs/PuPu4PsPs/8/8/PfPf4PwPw/RfEfPf2PwEwRw/KfNfPf2PwNwKw s -".
+ *
+ * Binary: ENCODED_SIZE bytes. The occupied-square mask as a big-endian long, one byte holding the
+ * side to move (bits 0-1) and the eliminated set (bits 2-5), then the piece code of every occupied
+ * square in square order, padded with zeros. Positions never hold more than MAX_PIECES pieces.
+ */
+public final class PositionCodec {
+    public static final int MAX_PIECES = 32; // Four armies of eight; pieces are never added
+    public static final int ENCODED_SIZE = Long.BYTES + 1 + MAX_PIECES;
+
+    private static final String TYPE_LETTERS = "KRENPG"; // By PieceType ordinal
+    private static final String PLAYER_LETTERS = "sufw"; // By Player ordinal: SPRING, SUMMER, FALL, WINTER
+
+    private PositionCodec() {
+    }
+
+    public static String toText(Position position) {
+        return toText(PositionSnapshot.of(position));
+    }
+
+    public static String toText(PositionSnapshot position) {
+        StringBuilder text = new StringBuilder(96);
+        for (int row = 0; row < Board.SIZE; row++) {
+            if (row > 0) text.append('/');
+            int empty = 0;
+            for (int col = 0; col < Board.SIZE; col++) {
+                int code = position.pieceAt(Position.square(row, col));
+                if (code == Position.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    text.append(empty);
+                    empty = 0;
+                }
+                appendPiece(text, code);
+            }
+            if (empty > 0) text.append(empty);
+        }
+
+        text.append(' ').append(PLAYER_LETTERS.charAt(position.getSideToMove())).append(' ');
+        if (position.getEliminated() == 0) {
+            text.append('-');
+        }
+        for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+            if ((position.getEliminated() & (1 << p)) != 0) {
+                text.append(PLAYER_LETTERS.charAt(p));
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Append a piece code as it appears in the text form, e.g. "Ru>s"
+     */
+    static void appendPiece(StringBuilder text, int code) {
+        text.append(TYPE_LETTERS.charAt(Position.typeOf(code)));
+        text.append(PLAYER_LETTERS.charAt(Position.ownerOf(code)));
+        if (Position.controllerOf(code) != Position.ownerOf(code)) {
+            text.append('>').append(PLAYER_LETTERS.charAt(Position.controllerOf(code)));
+        }
+    }
+
+    /**
+     * Parse piece codes written one after another in the text form, e.g. "KsRu>sKf"
+     * @throws IllegalArgumentException if the text is malformed
+     */
+    static int[] parsePieces(String text) {
+        int[] codes = new int[text.length() / 2];
+        int count = 0;
+        int i = 0;
+        while (i < text.length()) {
+            if (i + 1 >= text.length()) {
+                throw new IllegalArgumentException("Incomplete piece in " + text);
+            }
+            int type = letter(TYPE_LETTERS, text.charAt(i), text);
+            int owner = letter(PLAYER_LETTERS, text.charAt(i + 1), text);
+            int controller = owner;
+            i += 2;
+            if (i < text.length() && text.charAt(i) == '>') {
+                if (i + 1 >= text.length()) {
+                    throw new IllegalArgumentException("Missing controller in " + text);
+                }
+                controller = letter(PLAYER_LETTERS, text.charAt(i + 1), text);
+                i += 2;
+            }
+            codes[count++] = Position.encode(type, owner, controller);
+        }
+        return Arrays.copyOf(codes, count);
+    }
+
+    /**
+     * Parse the text form
+     * @throws IllegalArgumentException if the text is malformed
+     */
+    public static PositionSnapshot fromText(String text) {
+        String[] fields = text.trim().split("\\s+");
+        if (fields.length != 3) {
+            throw new IllegalArgumentException("Expected board, side to move and eliminated players: " + text);
+        }
+        String[] rows = fields[0].split("/", -1);
+        if (rows.length != Board.SIZE) {
+            throw new IllegalArgumentException("Expected " + Board.SIZE + " rows: " + fields[0]);
+        }
+
+        byte[] squares = new byte[Position.SQUARES];
+        for (int row = 0; row < Board.SIZE; row++) {
+            String line = rows[row];
+            int col = 0;
+            int i = 0;
+            while (i < line.length()) {
+                char ch = line.charAt(i);
+                if (ch >= '1' && ch <= '8') {
+                    col += ch - '0';
+                    i++;
+                    continue;
+                }
+                if (col >= Board.SIZE || i + 1 >= line.length()) {
+                    throw new IllegalArgumentException("Bad row " + row + ": " + line);
+                }
+                int type = letter(TYPE_LETTERS, ch, line);
+                int owner = letter(PLAYER_LETTERS, line.charAt(i + 1), line);
+                int controller = owner;
+                i += 2;
+                if (i < line.length() && line.charAt(i) == '>') {
+                    if (i + 1 >= line.length()) {
+                        throw new IllegalArgumentException("Missing controller in row " + row + ": " + line);
+                    }
+                    controller = letter(PLAYER_LETTERS, line.charAt(i + 1), line);
+                    i += 2;
+                }
+                squares[Position.square(row, col++)] = (byte) Position.encode(type, owner, controller);
+            }
+            if (col != Board.SIZE) {
+                throw new IllegalArgumentException("Row " + row + " does not cover " + Board.SIZE + " squares: " + line);
+            }
+        }
+
+        if (fields[1].length() != 1) {
+            throw new IllegalArgumentException("Bad side to move: " + fields[1]);
+        }
+        int side = letter(PLAYER_LETTERS, fields[1].charAt(0), fields[1]);
+        int eliminated = 0;
+        if (!fields[2].equals("-")) {
+            for (int i = 0; i < fields[2].length(); i++) {
+                eliminated |= 1 << letter(PLAYER_LETTERS, fields[2].charAt(i), fields[2]);
+            }
+        }
+        return PositionSnapshot.of(squares, side, eliminated);
+    }
+
+    private static int letter(String letters, char ch, String context) {
+        int index = letters.indexOf(ch);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unexpected '" + ch + "' in " + context);
+        }
+        return index;
+    }
+
+    public static byte[] encode(PositionSnapshot position) {
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODED_SIZE);
+        encode(position, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Write ENCODED_SIZE bytes at the buffer's position
+     * @throws IllegalArgumentException if the position holds more than MAX_PIECES pieces
+     */
+    public static void encode(PositionSnapshot position, ByteBuffer out) {
+        long occupied = 0L;
+        for (int sq = 0; sq < Position.SQUARES; sq++) {
+            if (position.pieceAt(sq) != Position.EMPTY) {
+                occupied |= 1L << sq;
+            }
+        }
+        if (Long.bitCount(occupied) > MAX_PIECES) {
+            throw new IllegalArgumentException("More than " + MAX_PIECES + " pieces");
+        }
+
+        out.putLong(occupied);
+        out.put((byte) (position.getSideToMove() | position.getEliminated() << 2));
+        int written = 0;
+        while (occupied != 0) {
+            int sq = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            out.put((byte) position.pieceAt(sq));
+            written++;
+        }
+        for (; written < MAX_PIECES; written++) {
+            out.put((byte) 0);
+        }
+    }
+
+    public static PositionSnapshot decode(byte[] data) {
+        return decode(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Read ENCODED_SIZE bytes from the buffer's position
+     * @throws IllegalArgumentException if the bytes do not describe a position
+     */
+    public static PositionSnapshot decode(ByteBuffer in) {
+        long occupied = in.getLong();
+        int state = in.get();
+        if (Long.bitCount(occupied) > MAX_PIECES || (state & ~0x3F) != 0) {
+            throw new IllegalArgumentException("Not an encoded position");
+        }
+
+        byte[] squares = new byte[Position.SQUARES];
+        int read = 0;
+        while (occupied != 0) {
+            int sq = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            int code = in.get();
+            if (Position.typeOf(code) < 0 || Position.typeOf(code) >= Position.TYPE_COUNT || (code & ~0x7F) != 0) {
+                throw new IllegalArgumentException("Bad piece code " + code + " on square " + sq);
+            }
+            squares[sq] = (byte) code;
+            read++;
+        }
+        in.position(in.position() + MAX_PIECES - read); // Skip the padding
+        return PositionSnapshot.of(squares, state & 3, state >>> 2);
+    }
+}
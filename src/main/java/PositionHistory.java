@@ -0,0 +1,135 @@
+import java.util.Arrays;
+
+/**
+ * Zobrist keys of the positions of a game or search line, for repetition and move-limit draws.
+ * Captures, promotions and eliminations can never be undone, so a position can only repeat one
+ * seen since the last of them; each entry remembers where that reversible window starts and a
+ * repetition check only scans the window.
+ *
+ * The draw rules live here too, so the rules core and a search using the same history agree:
+ * a game is drawn when a position occurs for the repetition limit's time, or after the move limit
+ * of plies without a capture, promotion or elimination. A limit of 0 turns that rule off.
+ */
+public class PositionHistory {
+    public static final int DEFAULT_REPETITIONS = 3;
+    public static final int DEFAULT_MOVE_LIMIT = 200; // 50 moves by each of four players
+
+    private long[] keys = new long[256];
+    private int[] windowStarts = new int[256]; // Per entry, the first entry it can repeat
+    private int size;
+    private int repetitionLimit = DEFAULT_REPETITIONS;
+    private int moveLimit = DEFAULT_MOVE_LIMIT;
+
+    /**
+     * @param repetitions occurrences of a position that draw the game, 0 for no repetition draws
+     * @param moveLimit plies without a capture, promotion or elimination that draw the game, 0 for no limit
+     */
+    public void setDrawRules(int repetitions, int moveLimit) {
+        this.repetitionLimit = repetitions;
+        this.moveLimit = moveLimit;
+    }
+
+    public int getRepetitionLimit() {
+        return repetitionLimit;
+    }
+
+    public int getMoveLimit() {
+        return moveLimit;
+    }
+
+    /**
+     * Start again from a single position
+     */
+    public void reset(long key) {
+        size = 0;
+        push(key, true);
+    }
+
+    /**
+     * Record the position after a move
+     * @param irreversible true after a capture, promotion or elimination
+     */
+    public void push(long key, boolean irreversible) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            windowStarts = Arrays.copyOf(windowStarts, size * 2);
+        }
+        keys[size] = key;
+        windowStarts[size] = irreversible || size == 0 ? size : windowStarts[size - 1];
+        size++;
+    }
+
+    /**
+     * Forget the last position, when its move is taken back
+     */
+    public void pop() {
+        size--;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Plies since the last capture, promotion or elimination
+     */
+    public int getReversiblePlies() {
+        return size - 1 - windowStarts[size - 1];
+    }
+
+    /**
+     * Number of earlier occurrences of the current position
+     */
+    public int getRepetitions() {
+        long key = keys[size - 1];
+        int count = 0;
+        for (int i = size - 2; i >= windowStarts[size - 1]; i--) {
+            if (keys[i] == key) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public boolean isRepetitionDraw() {
+        return repetitionLimit > 0 && getRepetitions() >= repetitionLimit - 1;
+    }
+
+    public boolean isMoveLimitDraw() {
+        return moveLimit > 0 && getReversiblePlies() >= moveLimit;
+    }
+
+    public boolean isDraw() {
+        return isMoveLimitDraw() || isRepetitionDraw();
+    }
+
+    /**
+     * Drop the positions before the reversible window, which can never be repeated; with a move
+     * limit this bounds the history of a game that is never taken back
+     */
+    public void compact() {
+        int start = windowStarts[size - 1];
+        if (start == 0) {
+            return;
+        }
+        size -= start;
+        System.arraycopy(keys, start, keys, 0, size);
+        Arrays.fill(windowStarts, 0, size, 0);
+    }
+
+    public void copyFrom(PositionHistory other) {
+        if (keys.length < other.size) {
+            keys = new long[other.keys.length];
+            windowStarts = new int[other.keys.length];
+        }
+        System.arraycopy(other.keys, 0, keys, 0, other.size);
+        System.arraycopy(other.windowStarts, 0, windowStarts, 0, other.size);
+        size = other.size;
+        repetitionLimit = other.repetitionLimit;
+        moveLimit = other.moveLimit;
+    }
+}
@@ -0,0 +1,113 @@
+import java.util.Arrays;
+
+/**
+ * Immutable copy of a game state: the piece code on every square, side to move and eliminated
+ * players. Small enough to pass between threads and queues, and since it never changes it can be
+ * shared instead of copied. Hashing uses the Zobrist key, so hashCode is constant time and equal
+ * snapshots hash alike.
+ */
+public final class PositionSnapshot {
+    private final byte[] squares; // Piece code per square, Position.EMPTY if vacant
+    private final int sideToMove;
+    private final int eliminated;
+    private final long key;
+
+    private PositionSnapshot(byte[] squares, int sideToMove, int eliminated, long key) {
+        this.squares = squares;
+        this.sideToMove = sideToMove;
+        this.eliminated = eliminated;
+        this.key = key;
+    }
+
+    public static PositionSnapshot of(Position position) {
+        byte[] squares = new byte[Position.SQUARES];
+        for (int sq = 0; sq < Position.SQUARES; sq++) {
+            squares[sq] = (byte) position.pieceAt(sq);
+        }
+        return new PositionSnapshot(squares, position.getSideToMove(), position.getEliminated(), position.getKey());
+    }
+
+    public static PositionSnapshot of(Board board) {
+        return of(board.getPosition());
+    }
+
+    public static PositionSnapshot of(GameController controller) {
+        return of(controller.getBoard().getPosition());
+    }
+
+    /**
+     * Build a snapshot from raw state, as read back from storage
+     * @param squares piece code per square; copied
+     */
+    public static PositionSnapshot of(byte[] squares, int sideToMove, int eliminated) {
+        long key = Zobrist.SIDE[sideToMove] ^ Zobrist.eliminated(eliminated);
+        for (int sq = 0; sq < Position.SQUARES; sq++) {
+            if (squares[sq] != Position.EMPTY) {
+                key ^= Zobrist.PIECE[squares[sq]][sq];
+            }
+        }
+        return new PositionSnapshot(squares.clone(), sideToMove, eliminated, key);
+    }
+
+    public int pieceAt(int square) {
+        return squares[square];
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public int getEliminated() {
+        return eliminated;
+    }
+
+    public long getKey() {
+        return key;
+    }
+
+    /**
+     * Overwrite a position with this state; its undo stack is cleared
+     */
+    public void restore(Position position) {
+        restore(position, squares, sideToMove, eliminated);
+    }
+
+    public Position toPosition() {
+        Position position = new Position();
+        restore(position);
+        return position;
+    }
+
+    /**
+     * Overwrite a board's cells and bitboards with this state
+     */
+    public void restore(Board board) {
+        restore(board.getPosition());
+        board.syncFromPosition();
+    }
+
+    private static void restore(Position position, byte[] squares, int sideToMove, int eliminated) {
+        position.clear();
+        for (int sq = 0; sq < Position.SQUARES; sq++) {
+            if (squares[sq] != Position.EMPTY) {
+                position.put(sq, squares[sq]);
+            }
+        }
+        position.setSideToMove(sideToMove);
+        position.setEliminated(eliminated);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof PositionSnapshot)) return false;
+        PositionSnapshot that = (PositionSnapshot) other;
+        return key == that.key && sideToMove == that.sideToMove && eliminated == that.eliminated
+                && Arrays.equals(squares, that.squares);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (key ^ (key >>> 32));
+    }
+}
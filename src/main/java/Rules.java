@@ -0,0 +1,37 @@
+/**
+ * Turn sequencing on a Position, matching GameController: after each move every other active
+ * player without a legal reply (checkmate or stalemate) is eliminated and their army passes to
+ * the mover, then the turn moves to the next player still in the game.
+ */
+public final class Rules {
+    private Rules() {
+    }
+
+    /**
+     * Play a legal move for the side to move. Undo everything with a single position.unmake().
+     * @param scratch move buffer of at least MoveGenerator.MAX_MOVES used for the elimination checks
+     */
+    public static void play(Position position, int move, int[] scratch) {
+        int mover = position.getSideToMove();
+        position.make(move);
+        resolveEliminations(position, mover, scratch);
+        position.advanceTurn();
+    }
+
+    /**
+     * Eliminate every other active player left without a legal move after the mover's move
+     */
+    public static void resolveEliminations(Position position, int mover, int[] scratch) {
+        // Check the other players in turn order so simultaneous mates resolve deterministically
+        for (int i = 1; i < Position.PLAYER_COUNT; i++) {
+            int player = (mover + i) % Position.PLAYER_COUNT;
+            if (!position.isEliminated(player) && !MoveGenerator.hasLegalMove(position, player, scratch)) {
+                position.eliminate(player, mover);
+            }
+        }
+    }
+
+    public static boolean isGameOver(Position position) {
+        return position.getActivePlayerCount() <= 1;
+    }
+}
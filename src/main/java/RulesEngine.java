@@ -0,0 +1,182 @@
+/**
+ * The game rules without any UI state: legal moves, applying a move with its eliminations and army
+ * transfers, and turn order. Works directly on a Position and allocates nothing per move, so bulk
+ * simulations can drive it without any UI cost; GameController is a thin adapter over it.
+ *
+ * After each move every other active player is examined in turn order after the mover. A player
+ * without a legal move is eliminated (checkmate if in check, stalemate otherwise), their king is
+ * removed and their army passes to the mover. The turn then goes to the next player still in the
+ * game.
+ *
+ * The game is also drawn, ending it without a winner, by repetition or by the move limit as set
+ * on the PositionHistory (threefold repetition and 200 plies without a capture, promotion or
+ * elimination by default).
+ */
+public class RulesEngine {
+    private final Position position;
+    private final int[] scratch = new int[MoveGenerator.MAX_MOVES];
+    private final PositionHistory history = new PositionHistory();
+
+    /**
+     * Start a new game from the initial setup
+     */
+    public RulesEngine() {
+        this(PieceSetup.initialPosition());
+    }
+
+    /**
+     * Apply the rules to an existing position, which is changed in place
+     */
+    public RulesEngine(Position position) {
+        this.position = position;
+        history.reset(position.getKey());
+    }
+
+    public Position getPosition() {
+        return position;
+    }
+
+    public int getSideToMove() {
+        return position.getSideToMove();
+    }
+
+    public boolean isGameOver() {
+        return Rules.isGameOver(position) || history.isDraw();
+    }
+
+    public boolean isDraw() {
+        return !Rules.isGameOver(position) && history.isDraw();
+    }
+
+    /**
+     * Positions since the start or the last reset, with the draw rules; a search given this
+     * history scores repetitions the same way
+     */
+    public PositionHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Start the history again from the current position, after it was changed directly
+     */
+    public void resetHistory() {
+        history.reset(position.getKey());
+    }
+
+    /**
+     * @return the last player standing, or -1 while the game is running or when it was drawn
+     */
+    public int getWinner() {
+        if (!Rules.isGameOver(position)) {
+            return -1;
+        }
+        for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+            if (!position.isEliminated(p)) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Write the side to move's legal moves into the buffer. This can be 0 while the game is running:
+     * a player checked earlier in the turn may lose their last move when a later elimination
+     * removes a king and opens a line, exactly as in the original controller.
+     * @return number of moves written, 0 once the game is over
+     */
+    public int generateLegalMoves(int[] moves) {
+        return isGameOver() ? 0 : MoveGenerator.generateLegal(position, position.getSideToMove(), moves);
+    }
+
+    /**
+     * @return true if the side to move can play; false once the game is over, and also when a
+     *         later elimination in the same turn left the next player stuck
+     */
+    public boolean hasLegalMove() {
+        return !isGameOver() && MoveGenerator.hasLegalMove(position, position.getSideToMove(), scratch);
+    }
+
+    /**
+     * Find the legal move of the side to move between two squares
+     * @return the move with its capture and promotion flags, or Move.NONE if it is not legal
+     */
+    public int findMove(int from, int to) {
+        int code = position.pieceAt(from);
+        if (code == Position.EMPTY || Position.controllerOf(code) != position.getSideToMove() || isGameOver()) {
+            return Move.NONE;
+        }
+        int count = MoveGenerator.generateLegal(position, from, scratch, 0);
+        for (int i = 0; i < count; i++) {
+            if (Move.to(scratch[i]) == to) {
+                return scratch[i];
+            }
+        }
+        return Move.NONE;
+    }
+
+    public boolean isLegal(int move) {
+        return move != Move.NONE && findMove(Move.from(move), Move.to(move)) == move;
+    }
+
+    /**
+     * Play a legal move for the side to move, resolve eliminations and pass the turn
+     * @return the GameEvent flags describing what the move caused
+     */
+    public int applyMove(int move) {
+        int mover = position.getSideToMove();
+        int eliminated = position.getEliminated();
+        position.make(move);
+
+        int events = GameEvent.NONE;
+        for (int i = 1; i < Position.PLAYER_COUNT; i++) {
+            int player = (mover + i) % Position.PLAYER_COUNT;
+            if (position.isEliminated(player)) continue;
+
+            boolean inCheck = MoveGenerator.isInCheck(position, player);
+            if (!MoveGenerator.hasLegalMove(position, player, scratch)) {
+                position.eliminate(player, mover);
+                events |= (inCheck ? GameEvent.checkmate(player) : GameEvent.stalemate(player)) | GameEvent.TRANSFER;
+            } else if (inCheck) {
+                events |= GameEvent.check(player);
+            }
+        }
+
+        position.advanceTurn();
+
+        history.push(position.getKey(), Move.isCapture(move) || Move.isPromotion(move) || position.getEliminated() != eliminated);
+        if (Rules.isGameOver(position)) {
+            events |= GameEvent.GAME_OVER;
+        } else if (history.isRepetitionDraw()) {
+            events |= GameEvent.DRAW_REPETITION | GameEvent.GAME_OVER;
+        } else if (history.isMoveLimitDraw()) {
+            events |= GameEvent.DRAW_MOVE_LIMIT | GameEvent.GAME_OVER;
+        }
+        return events;
+    }
+
+    /**
+     * Take back the last applied move with everything it caused
+     */
+    public void undoMove() {
+        position.unmake();
+        history.pop();
+    }
+
+    /**
+     * Forget what undoMove would need and the positions that cannot repeat any more, so a long
+     * running game keeps a bounded footprint; moves made so far can no longer be taken back
+     */
+    public void compact() {
+        position.clearUndo();
+        history.compact();
+    }
+
+    /**
+     * Clear the position and set up the initial pieces with Spring to move
+     */
+    public void reset() {
+        position.clear();
+        new PieceSetup(position).setupInitialPieces();
+        history.reset(position.getKey());
+    }
+}
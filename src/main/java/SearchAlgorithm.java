@@ -0,0 +1,11 @@
+/**
+ * Multi-player search strategies
+ */
+public enum SearchAlgorithm {
+    /** Every player maximises their own component of the score vector */
+    MAXN,
+    /** The searching player assumes all opponents cooperate against them, allowing alpha-beta */
+    PARANOID,
+    /** Alternates the searching player's moves with the single strongest reply from any opponent */
+    BRS
+}
@@ -0,0 +1,635 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Headless iterative-deepening search for the four-player game, with max^n, paranoid and
+ * best-reply (BRS) strategies. Works on its own Position copy and reuses preallocated buffers,
+ * so one engine can be called repeatedly from a simulation loop. Not thread-safe, but several
+ * engines may share one TranspositionTable.
+ *
+ * Given the game's PositionHistory, a line that repeats any earlier position, or runs into the move
+ * limit, is scored as a draw.
+ *
+ * Usage: java SearchEngine [MAXN|PARANOID|BRS] [depth] [timeMillis] [hashMb]
+ */
+public class SearchEngine {
+    public static final int MAX_PLY = 64;
+
+    private static final int INFINITY = Evaluation.WIN + 1;
+    private static final int CHECK_INTERVAL = 1023; // Nodes between time checks, minus one
+    private static final int NO_CUTOFF = Integer.MIN_VALUE;
+    // Proven but without a distance to mate, so kept below mate scores; the paranoid difference of a
+    // won and a lost player, twice this, still fits the transposition table's stored scores
+    private static final int TABLEBASE_WIN = 15_000;
+
+    private final SearchAlgorithm algorithm;
+    private final Position position = new Position(MAX_PLY + 1);
+    private final int[][] moves = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+    private final int[][] scoreStack = new int[MAX_PLY + 1][Position.PLAYER_COUNT];
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    private final int[] scratch = new int[MoveGenerator.MAX_MOVES];
+    private final int[] ttScores = new int[Position.PLAYER_COUNT];
+    private final TranspositionTable table;
+    private final MoveOrdering ordering = new MoveOrdering();
+    private final PositionHistory history = new PositionHistory();
+    private boolean orderMoves = true;
+    private Tablebases tablebases;
+
+    private long salt; // Separates table entries by algorithm and, outside max^n, by root player
+    private int helperIndex;
+    private boolean parallel; // Run by ParallelSearch, which ages the shared table itself
+    private AtomicBoolean stopSignal;
+
+    private int rootPlayer;
+    private long nodes;
+    private long deadline;
+    private long nodeLimit;
+    private boolean canStop;
+    private boolean stopped;
+
+    public SearchEngine(SearchAlgorithm algorithm) {
+        this(algorithm, null);
+    }
+
+    /**
+     * @param table transposition table, possibly shared with other engines, or null for none
+     */
+    public SearchEngine(SearchAlgorithm algorithm, TranspositionTable table) {
+        this.algorithm = algorithm;
+        this.table = table;
+    }
+
+    public SearchAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Make this engine one of a Lazy SMP set: a non-zero index starts odd helpers one iteration
+     * deeper and rotates the root move order; the table generation is left to ParallelSearch
+     */
+    void setHelperIndex(int helperIndex) {
+        this.helperIndex = helperIndex;
+        this.parallel = true;
+    }
+
+    /**
+     * Turn the capture, killer and history ordering on or off; the table move is always tried first
+     */
+    public void setMoveOrdering(boolean orderMoves) {
+        this.orderMoves = orderMoves;
+    }
+
+    /**
+     * Score positions covered by endgame tablebases by their proven result, or stop with null
+     */
+    public void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+
+    /**
+     * Share a flag that stops the search as soon as it is set, checked with the time budget
+     */
+    void setStopSignal(AtomicBoolean stopSignal) {
+        this.stopSignal = stopSignal;
+    }
+
+    /**
+     * Search for the side to move of a position, which is left unchanged
+     */
+    public SearchResult search(Position start, SearchLimits limits) {
+        return search(start, limits, null);
+    }
+
+    /**
+     * Search for the side to move of a position reached by a game
+     * @param gameHistory the game's positions ending with start, or null to only see repetitions
+     *        within the search
+     */
+    public SearchResult search(Position start, SearchLimits limits, PositionHistory gameHistory) {
+        long startTime = System.nanoTime();
+        position.copyFrom(start);
+        if (gameHistory != null && gameHistory.size() > 0 && gameHistory.getKey(gameHistory.size() - 1) == start.getKey()) {
+            history.copyFrom(gameHistory);
+        } else {
+            history.reset(start.getKey());
+        }
+        rootPlayer = position.getSideToMove();
+        salt = Zobrist.SEARCH[algorithm.ordinal()][algorithm == SearchAlgorithm.MAXN ? 0 : rootPlayer];
+        nodes = 0;
+        deadline = limits.getTimeMillis() > 0 ? startTime + limits.getTimeMillis() * 1_000_000L : Long.MAX_VALUE;
+        nodeLimit = limits.getMaxNodes() > 0 ? limits.getMaxNodes() : Long.MAX_VALUE;
+        stopped = false;
+        if (table != null && !parallel) {
+            table.newSearch();
+        }
+        ordering.newSearch();
+
+        int[] rootMoves = moves[0];
+        int rootCount = Rules.isGameOver(position) ? 0 : MoveGenerator.generateLegal(position, rootPlayer, rootMoves);
+        if (rootCount == 0) {
+            return new SearchResult(Move.NONE, new int[0], 0, 0, 0, 0);
+        }
+
+        if (helperIndex > 0) {
+            rotate(rootMoves, rootCount, helperIndex % rootCount);
+        }
+
+        int bestMove = rootMoves[0];
+        int bestScore = 0;
+        int[] bestLine = {bestMove};
+        int completedDepth = 0;
+
+        for (int depth = 1 + (helperIndex & 1); depth <= limits.getMaxDepth(); depth++) {
+            // Always finish the first iteration so there is a move to return; helpers never need one
+            canStop = depth > 1 || helperIndex > 0;
+            int score = searchRoot(rootMoves, rootCount, depth);
+            if (stopped) {
+                break;
+            }
+            if (algorithm == SearchAlgorithm.MAXN) {
+                extendPv(depth);
+            }
+
+            bestScore = score;
+            bestMove = pv[0][0];
+            bestLine = new int[pvLength[0]];
+            System.arraycopy(pv[0], 0, bestLine, 0, pvLength[0]);
+            completedDepth = depth;
+
+            moveToFront(rootMoves, rootCount, bestMove);
+            if (Math.abs(score) >= Evaluation.WIN) {
+                break; // Forced result, deeper iterations cannot change it
+            }
+        }
+
+        long elapsed = (System.nanoTime() - startTime) / 1_000_000;
+        return new SearchResult(bestMove, bestLine, bestScore, completedDepth, nodes, elapsed);
+    }
+
+    private int searchRoot(int[] rootMoves, int count, int depth) {
+        int alpha = -INFINITY;
+        for (int i = 0; i < count; i++) {
+            int move = rootMoves[i];
+            int score;
+            switch (algorithm) {
+                case MAXN:
+                    play(move);
+                    maxn(depth - 1, 1);
+                    score = scoreStack[1][rootPlayer];
+                    break;
+                case PARANOID:
+                    play(move);
+                    score = paranoid(depth - 1, 1, alpha, INFINITY);
+                    break;
+                default:
+                    makeAndResolve(move, rootPlayer);
+                    score = brsOpponents(depth - 1, 1, alpha, INFINITY);
+                    break;
+            }
+            unmake();
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > alpha) {
+                alpha = score;
+                updatePv(0, move);
+            }
+        }
+        return alpha;
+    }
+
+    /**
+     * Max^n: the side to move picks the child that maximises its own score; fills scoreStack[ply]
+     */
+    private void maxn(int depth, int ply) {
+        int[] out = scoreStack[ply];
+        pvLength[ply] = ply;
+        if (isDrawn()) {
+            Evaluation.draw(position, out);
+            return;
+        }
+        if (countNode() || depth == 0 || ply >= MAX_PLY || Rules.isGameOver(position)) {
+            evaluate(out);
+            return;
+        }
+
+        long key = position.getKey() ^ salt;
+        long entry = probe(key);
+        if (entry != 0 && TranspositionTable.depth(entry) >= depth) {
+            System.arraycopy(ttScores, 0, out, 0, Position.PLAYER_COUNT);
+            return;
+        }
+
+        int side = position.getSideToMove();
+        int[] buffer = moves[ply];
+        int count = MoveGenerator.generateLegal(position, side, buffer);
+        if (count == 0) {
+            evaluate(out);
+            return;
+        }
+        order(buffer, count, ply, TranspositionTable.move(entry));
+
+        int[] child = scoreStack[ply + 1];
+        int best = -INFINITY;
+        int bestMove = Move.NONE;
+        for (int i = 0; i < count; i++) {
+            play(buffer[i]);
+            maxn(depth - 1, ply + 1);
+            unmake();
+            if (stopped) {
+                return;
+            }
+
+            if (child[side] > best) {
+                best = child[side];
+                bestMove = buffer[i];
+                System.arraycopy(child, 0, out, 0, Position.PLAYER_COUNT);
+                updatePv(ply, buffer[i]);
+            }
+        }
+        if (table != null) {
+            table.store(key, out, depth, TranspositionTable.BOUND_EXACT, bestMove);
+        }
+    }
+
+    /**
+     * Paranoid alpha-beta: the root player maximises, every opponent minimises the root's score
+     */
+    private int paranoid(int depth, int ply, int alpha, int beta) {
+        pvLength[ply] = ply;
+        if (isDrawn()) {
+            return drawForRoot(ply);
+        }
+        if (countNode() || depth == 0 || ply >= MAX_PLY || Rules.isGameOver(position)) {
+            return evaluateForRoot(ply);
+        }
+
+        long key = position.getKey() ^ salt;
+        long entry = probe(key);
+        if (entry != 0 && TranspositionTable.depth(entry) >= depth) {
+            int cutoff = boundedScore(entry, alpha, beta);
+            if (cutoff != NO_CUTOFF) {
+                return cutoff;
+            }
+        }
+
+        int side = position.getSideToMove();
+        int[] buffer = moves[ply];
+        int count = MoveGenerator.generateLegal(position, side, buffer);
+        if (count == 0) {
+            return evaluateForRoot(ply);
+        }
+        order(buffer, count, ply, TranspositionTable.move(entry));
+
+        int alphaStart = alpha;
+        int betaStart = beta;
+        int bestMove = Move.NONE;
+        boolean maximizing = side == rootPlayer;
+        for (int i = 0; i < count; i++) {
+            play(buffer[i]);
+            int score = paranoid(depth - 1, ply + 1, alpha, beta);
+            unmake();
+            if (stopped) {
+                return 0;
+            }
+
+            if (maximizing && score > alpha) {
+                alpha = score;
+                bestMove = buffer[i];
+                updatePv(ply, buffer[i]);
+            } else if (!maximizing && score < beta) {
+                beta = score;
+                bestMove = buffer[i];
+                updatePv(ply, buffer[i]);
+            }
+            if (alpha >= beta) {
+                ordering.update(side, buffer[i], ply, depth);
+                break;
+            }
+        }
+
+        int result = maximizing ? alpha : beta;
+        store(key, result, depth, alphaStart, betaStart, bestMove);
+        return result;
+    }
+
+    /**
+     * BRS layer where the root player moves
+     */
+    private int brsRoot(int depth, int ply, int alpha, int beta) {
+        pvLength[ply] = ply;
+        if (isDrawn()) {
+            return drawForRoot(ply);
+        }
+        if (countNode() || depth == 0 || ply >= MAX_PLY || Rules.isGameOver(position)
+                || position.isEliminated(rootPlayer)) {
+            return evaluateForRoot(ply);
+        }
+
+        int savedSide = position.getSideToMove();
+        position.setSideToMove(rootPlayer);
+        long key = position.getKey() ^ salt;
+        long entry = probe(key);
+        if (entry != 0 && TranspositionTable.depth(entry) >= depth) {
+            int cutoff = boundedScore(entry, alpha, beta);
+            if (cutoff != NO_CUTOFF) {
+                position.setSideToMove(savedSide);
+                return cutoff;
+            }
+        }
+
+        int[] buffer = moves[ply];
+        int count = MoveGenerator.generateLegal(position, rootPlayer, buffer);
+        order(buffer, count, ply, TranspositionTable.move(entry));
+        int best = count == 0 ? evaluateForRoot(ply) : -INFINITY;
+        int bestMove = Move.NONE;
+
+        for (int i = 0; i < count && !stopped; i++) {
+            makeAndResolve(buffer[i], rootPlayer);
+            int score = brsOpponents(depth - 1, ply + 1, Math.max(alpha, best), beta);
+            unmake();
+
+            if (score > best) {
+                best = score;
+                bestMove = buffer[i];
+                updatePv(ply, buffer[i]);
+            }
+            if (best >= beta) {
+                ordering.update(rootPlayer, buffer[i], ply, depth);
+                break;
+            }
+        }
+        position.setSideToMove(savedSide);
+        store(key, best, depth, alpha, beta, bestMove);
+        return best;
+    }
+
+    /**
+     * BRS layer where exactly one opponent moves: the reply that hurts the root player most,
+     * taken over every active opponent while the others pass
+     */
+    private int brsOpponents(int depth, int ply, int alpha, int beta) {
+        pvLength[ply] = ply;
+        if (isDrawn()) {
+            return drawForRoot(ply);
+        }
+        if (countNode() || depth == 0 || ply >= MAX_PLY || Rules.isGameOver(position)
+                || position.isEliminated(rootPlayer)) {
+            return evaluateForRoot(ply);
+        }
+
+        long key = position.getKey() ^ salt ^ Zobrist.BRS_OPPONENTS;
+        long entry = probe(key);
+        if (entry != 0 && TranspositionTable.depth(entry) >= depth) {
+            int cutoff = boundedScore(entry, alpha, beta);
+            if (cutoff != NO_CUTOFF) {
+                return cutoff;
+            }
+        }
+
+        int savedSide = position.getSideToMove();
+        int[] buffer = moves[ply];
+        int best = INFINITY;
+        int bestMove = Move.NONE;
+        boolean anyMove = false;
+
+        for (int i = 1; i < Position.PLAYER_COUNT && best > alpha && !stopped; i++) {
+            int opponent = (rootPlayer + i) % Position.PLAYER_COUNT;
+            if (position.isEliminated(opponent)) continue;
+
+            position.setSideToMove(opponent);
+            int count = MoveGenerator.generateLegal(position, opponent, buffer);
+            order(buffer, count, ply, TranspositionTable.move(entry));
+            for (int j = 0; j < count; j++) {
+                anyMove = true;
+                makeAndResolve(buffer[j], opponent);
+                int score = brsRoot(depth - 1, ply + 1, alpha, Math.min(beta, best));
+                unmake();
+                if (stopped) break;
+
+                if (score < best) {
+                    best = score;
+                    bestMove = buffer[j];
+                    updatePv(ply, buffer[j]);
+                }
+                if (best <= alpha) {
+                    ordering.update(opponent, buffer[j], ply, depth);
+                    break;
+                }
+            }
+        }
+        position.setSideToMove(savedSide);
+        if (!anyMove) {
+            return brsRoot(depth - 1, ply + 1, alpha, beta);
+        }
+        store(key, best, depth, alpha, beta, bestMove);
+        return best;
+    }
+
+    /**
+     * Max^n takes every table hit as final, which ends the principal variation at the hit; continue
+     * it from the table's best moves up to the searched depth
+     */
+    private void extendPv(int depth) {
+        int length = pvLength[0];
+        for (int i = 0; i < length; i++) {
+            play(pv[0][i]);
+        }
+        int played = length;
+        while (length < depth && !Rules.isGameOver(position)) {
+            long entry = probe(position.getKey() ^ salt);
+            int move = TranspositionTable.move(entry);
+            if (entry == 0 || !isLegal(move, moves[length])) {
+                break;
+            }
+            pv[0][length++] = move;
+            play(move);
+            played++;
+        }
+        for (int i = 0; i < played; i++) {
+            unmake();
+        }
+        pvLength[0] = length;
+    }
+
+    private boolean isLegal(int move, int[] buffer) {
+        int count = MoveGenerator.generateLegal(position, position.getSideToMove(), buffer);
+        for (int i = 0; i < count; i++) {
+            if (buffer[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Play a full turn: move, eliminations and the next player's turn
+     */
+    private void play(int move) {
+        int eliminated = position.getEliminated();
+        Rules.play(position, move, scratch);
+        pushHistory(move, eliminated);
+    }
+
+    /**
+     * Move and resolve eliminations but keep the turn, for BRS which picks the next mover itself
+     */
+    private void makeAndResolve(int move, int mover) {
+        int eliminated = position.getEliminated();
+        position.make(move);
+        Rules.resolveEliminations(position, mover, scratch);
+        pushHistory(move, eliminated);
+    }
+
+    private void pushHistory(int move, int eliminatedBefore) {
+        history.push(position.getKey(), Move.isCapture(move) || Move.isPromotion(move)
+                || position.getEliminated() != eliminatedBefore);
+    }
+
+    private void unmake() {
+        position.unmake();
+        history.pop();
+    }
+
+    /**
+     * A line that repeats an earlier position is scored as a draw at its first repetition, since
+     * whoever steered into it can keep repeating
+     */
+    private boolean isDrawn() {
+        return history.getRepetitions() > 0 || history.isMoveLimitDraw();
+    }
+
+    private int drawForRoot(int ply) {
+        int[] scores = scoreStack[ply];
+        Evaluation.draw(position, scores);
+        return Evaluation.paranoid(position, scores, rootPlayer);
+    }
+
+    /**
+     * Look up a salted key, leaving any stored score vector in ttScores
+     * @return the entry's data word, or 0 on a miss or without a table
+     */
+    private long probe(long key) {
+        return table != null ? table.probe(key, ttScores) : 0L;
+    }
+
+    /**
+     * Turn a stored root-player score into a cutoff for the window (alpha, beta)
+     * @return the score to return, or NO_CUTOFF if the node must be searched
+     */
+    private int boundedScore(long entry, int alpha, int beta) {
+        int score = ttScores[rootPlayer];
+        switch (TranspositionTable.bound(entry)) {
+            case TranspositionTable.BOUND_EXACT:
+                // A score inside the window would make this node part of the principal variation,
+                // which the table cannot continue, so only cut off outside it
+                return score <= alpha ? alpha : score >= beta ? beta : NO_CUTOFF;
+            case TranspositionTable.BOUND_LOWER:
+                return score >= beta ? beta : NO_CUTOFF;
+            case TranspositionTable.BOUND_UPPER:
+                return score <= alpha ? alpha : NO_CUTOFF;
+            default:
+                return NO_CUTOFF;
+        }
+    }
+
+    /**
+     * Store a root-player score searched with the window (alpha, beta)
+     */
+    private void store(long key, int score, int depth, int alpha, int beta, int bestMove) {
+        if (table == null || stopped) {
+            return;
+        }
+        int bound = score <= alpha ? TranspositionTable.BOUND_UPPER
+                : score >= beta ? TranspositionTable.BOUND_LOWER
+                : TranspositionTable.BOUND_EXACT;
+        Arrays.fill(ttScores, 0);
+        ttScores[rootPlayer] = score;
+        table.store(key, ttScores, depth, bound, bestMove);
+    }
+
+    /**
+     * Static evaluation, overridden by a tablebase result once two players are left with little
+     * material
+     */
+    private void evaluate(int[] scores) {
+        Evaluation.evaluate(position, scores);
+        if (tablebases == null || Rules.isGameOver(position)) {
+            return;
+        }
+        int result = tablebases.probe(position);
+        if (result == Tablebase.NONE) {
+            return;
+        }
+        int side = position.getSideToMove();
+        int score = result == Tablebase.WIN ? TABLEBASE_WIN : result == Tablebase.LOSS ? -TABLEBASE_WIN : 0;
+        for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+            if (!position.isEliminated(p)) {
+                scores[p] = p == side ? score : -score;
+            }
+        }
+    }
+
+    private int evaluateForRoot(int ply) {
+        int[] scores = scoreStack[ply];
+        evaluate(scores);
+        return Evaluation.paranoid(position, scores, rootPlayer);
+    }
+
+    /**
+     * Count a node and check the budget every few thousand nodes
+     * @return true if the search has been stopped
+     */
+    private boolean countNode() {
+        nodes++;
+        if (canStop && (nodes & CHECK_INTERVAL) == 0 && (nodes >= nodeLimit || System.nanoTime() >= deadline
+                || (stopSignal != null && stopSignal.get()))) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    private void updatePv(int ply, int move) {
+        pv[ply][ply] = move;
+        int childLength = pvLength[ply + 1];
+        System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, childLength - (ply + 1));
+        pvLength[ply] = Math.max(childLength, ply + 1);
+    }
+
+    private void order(int[] buffer, int count, int ply, int ttMove) {
+        if (orderMoves) {
+            ordering.order(position, buffer, count, ply, ttMove);
+        } else {
+            moveToFront(buffer, count, ttMove);
+        }
+    }
+
+    private static void moveToFront(int[] list, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (list[i] == move) {
+                System.arraycopy(list, 0, list, 1, i);
+                list[0] = move;
+                return;
+            }
+        }
+    }
+
+    private static void rotate(int[] list, int count, int distance) {
+        int[] copy = Arrays.copyOf(list, count);
+        for (int i = 0; i < count; i++) {
+            list[i] = copy[(i + distance) % count];
+        }
+    }
+
+    public static void main(String[] args) {
+        SearchAlgorithm algorithm = args.length > 0 ? SearchAlgorithm.valueOf(args[0]) : SearchAlgorithm.PARANOID;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        long time = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        int hashMb = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+
+        SearchEngine engine = new SearchEngine(algorithm, hashMb > 0 ? new TranspositionTable(hashMb) : null);
+        System.out.println(engine.search(PieceSetup.initialPosition(), new SearchLimits(depth, time, 0)));
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Budget for one search. Any limit set to 0 is unbounded; the first iteration always completes.
+ */
+public class SearchLimits {
+    private final int maxDepth;
+    private final long timeMillis;
+    private final long maxNodes;
+
+    public SearchLimits(int maxDepth, long timeMillis, long maxNodes) {
+        this.maxDepth = maxDepth;
+        this.timeMillis = timeMillis;
+        this.maxNodes = maxNodes;
+    }
+
+    public static SearchLimits depth(int maxDepth) {
+        return new SearchLimits(maxDepth, 0, 0);
+    }
+
+    public static SearchLimits time(long timeMillis) {
+        return new SearchLimits(0, timeMillis, 0);
+    }
+
+    public static SearchLimits nodes(long maxNodes) {
+        return new SearchLimits(0, 0, maxNodes);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth > 0 ? maxDepth : SearchEngine.MAX_PLY - 1;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Outcome of a search: the best root move, the line expected to follow it and its score for the
+ * searching player, all from the last completed iteration
+ */
+public class SearchResult {
+    private final int bestMove;
+    private final int[] principalVariation;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long timeMillis;
+
+    public SearchResult(int bestMove, int[] principalVariation, int score, int depth, long nodes, long timeMillis) {
+        this.bestMove = bestMove;
+        this.principalVariation = principalVariation;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.timeMillis = timeMillis;
+    }
+
+    /**
+     * @return the encoded best move, or Move.NONE if the side to move has no legal move
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    public int[] getPrincipalVariation() {
+        return principalVariation;
+    }
+
+    /**
+     * Score of the best move for the player who searched, in centipawns
+     */
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder pv = new StringBuilder();
+        for (int move : principalVariation) {
+            if (pv.length() > 0) pv.append(' ');
+            pv.append(Move.toString(move));
+        }
+        return "depth " + depth + " score " + score + " nodes " + nodes + " time " + timeMillis + " ms"
+                + " nps " + Perft.nodesPerSecond(nodes, timeMillis * 1_000_000L) + " pv " + pv;
+    }
+}
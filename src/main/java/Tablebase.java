@@ -0,0 +1,266 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Win/draw/loss for every position of one small material set once only two players are left, as
+ * generated by TablebaseGenerator. A material set is the sorted list of piece codes on the board;
+ * the two kings name the players still in the game and every other piece is controlled by one of
+ * them, including armies inherited from eliminated players.
+ *
+ * Positions are indexed by the square of each piece in set order (6 bits each, identical pieces in
+ * ascending square order) with the side to move above them: 0 for the lower player ordinal, 1 for
+ * the higher. Results take 2 bits per position, are stored deflated and are inflated on load
+ * (8 MB for a four piece set).
+ */
+public class Tablebase {
+    public static final int MAX_PIECES = 4;
+
+    // Results for the side to move
+    public static final int NONE = 0; // Not a reachable position, or not covered
+    public static final int WIN = 1;
+    public static final int LOSS = 2;
+    public static final int DRAW = 3;
+
+    private static final int MAGIC = 0x46535442; // "FSTB"
+    private static final int KING = PieceType.KING.ordinal();
+
+    private final int[] codes;
+    private final int[] players = new int[2]; // Lower ordinal first
+    private final byte[] results;
+
+    Tablebase(int[] codes, byte[] results) {
+        this.codes = codes.clone();
+        this.results = results;
+        int found = 0;
+        for (int code : codes) {
+            if (Position.typeOf(code) == KING) {
+                players[found++] = Position.controllerOf(code);
+            }
+        }
+        if (players[0] > players[1]) {
+            int swap = players[0];
+            players[0] = players[1];
+            players[1] = swap;
+        }
+    }
+
+    /**
+     * Number of positions in a set of the given size, including unreachable ones
+     */
+    public static int size(int pieces) {
+        return 2 << (6 * pieces);
+    }
+
+    public int[] getCodes() {
+        return codes.clone();
+    }
+
+    public long getSignature() {
+        return signature(codes);
+    }
+
+    /**
+     * Player ordinal for side bit 0 or 1
+     */
+    public int getPlayer(int side) {
+        return players[side];
+    }
+
+    public String getName() {
+        return name(codes);
+    }
+
+    /**
+     * Result for a given player to move in a position holding exactly this material
+     */
+    public int probe(Position position, int sideToMove) {
+        return get(index(position, sideToMove));
+    }
+
+    public int get(int index) {
+        return (results[index >>> 2] >>> ((index & 3) << 1)) & 3;
+    }
+
+    public int index(Position position, int sideToMove) {
+        int index = sideToMove == players[1] ? 1 << (6 * codes.length) : 0;
+        long taken = 0L;
+        for (int i = 0; i < codes.length; i++) {
+            int code = codes[i];
+            long squares = position.getPieces(Position.ownerOf(code), Position.typeOf(code))
+                    & position.getOccupancy(Position.controllerOf(code)) & ~taken;
+            int square = Long.numberOfTrailingZeros(squares);
+            taken |= 1L << square;
+            index |= square << (6 * i);
+        }
+        return index;
+    }
+
+    /**
+     * Count positions by result, for reports
+     * @return counts indexed by NONE, WIN, LOSS and DRAW
+     */
+    public long[] count() {
+        long[] counts = new long[4];
+        for (int i = 0; i < size(codes.length); i++) {
+            counts[get(i)]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Key of a material set, from its piece codes in ascending order
+     */
+    public static long signature(int[] sortedCodes) {
+        long signature = 0L;
+        for (int code : sortedCodes) {
+            signature = signature << 8 | code;
+        }
+        return signature;
+    }
+
+    /**
+     * Key of the material on the board, or 0 if the position is not one a tablebase can cover
+     */
+    public static long signature(Position position) {
+        long occupied = position.getOccupied();
+        if (position.getActivePlayerCount() != 2 || Long.bitCount(occupied) > MAX_PIECES) {
+            return 0L;
+        }
+        int[] codes = new int[MAX_PIECES];
+        int count = 0;
+        while (occupied != 0) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            int code = position.pieceAt(square);
+            // Insertion sort of at most MAX_PIECES codes
+            int i = count++;
+            for (; i > 0 && codes[i - 1] > code; i--) {
+                codes[i] = codes[i - 1];
+            }
+            codes[i] = code;
+        }
+        long signature = 0L;
+        for (int i = 0; i < count; i++) {
+            signature = signature << 8 | codes[i];
+        }
+        return signature;
+    }
+
+    /**
+     * Sort and check a material set
+     * @throws IllegalArgumentException unless it has two kings of different players, every other
+     *         piece controlled by one of them, and no more than MAX_PIECES pieces
+     */
+    public static int[] normalize(int[] codes) {
+        int[] sorted = codes.clone();
+        Arrays.sort(sorted);
+        if (sorted.length > MAX_PIECES) {
+            throw new IllegalArgumentException("At most " + MAX_PIECES + " pieces: " + name(sorted));
+        }
+        int active = 0;
+        for (int code : sorted) {
+            if (Position.typeOf(code) == KING) {
+                if (Position.ownerOf(code) != Position.controllerOf(code) || (active & (1 << Position.ownerOf(code))) != 0) {
+                    throw new IllegalArgumentException("Bad kings in " + name(sorted));
+                }
+                active |= 1 << Position.ownerOf(code);
+            }
+        }
+        if (Integer.bitCount(active) != 2) {
+            throw new IllegalArgumentException("Need the kings of exactly two players: " + name(sorted));
+        }
+        for (int code : sorted) {
+            int owner = Position.ownerOf(code);
+            int controller = Position.controllerOf(code);
+            // Pieces only change hands when their owner is eliminated
+            if ((active & (1 << controller)) == 0 || ((active & (1 << owner)) != 0 && owner != controller)) {
+                throw new IllegalArgumentException("Piece " + name(new int[]{code}) + " cannot be on the board with " + name(sorted));
+            }
+        }
+        return sorted;
+    }
+
+    public static String name(int[] codes) {
+        StringBuilder text = new StringBuilder();
+        for (int code : codes) {
+            PositionCodec.appendPiece(text, code);
+        }
+        return text.toString();
+    }
+
+    /**
+     * File name for a material set; '>' is spelled '_' to keep names shell friendly
+     */
+    public static String fileName(int[] codes) {
+        return name(codes).replace('>', '_') + ".fstb";
+    }
+
+    public void save(Path file) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(results);
+        deflater.finish();
+        byte[] compressed = new byte[results.length / 4 + 64];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        deflater.end();
+
+        try (OutputStream stream = Files.newOutputStream(file);
+             DataOutputStream out = new DataOutputStream(stream)) {
+            out.writeInt(MAGIC);
+            out.writeByte(codes.length);
+            for (int code : codes) {
+                out.writeByte(code);
+            }
+            out.writeInt(results.length);
+            out.writeInt(length);
+            out.write(compressed, 0, length);
+        }
+    }
+
+    public static Tablebase load(Path file) throws IOException {
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(stream)) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a tablebase: " + file);
+            }
+            int[] codes = new int[in.readUnsignedByte()];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = in.readUnsignedByte();
+            }
+            codes = normalize(codes);
+            byte[] results = new byte[in.readInt()];
+            byte[] compressed = new byte[in.readInt()];
+            in.readFully(compressed);
+            if (results.length != size(codes.length) / 4) {
+                throw new IOException("Bad table size in " + file);
+            }
+
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed);
+                if (inflater.inflate(results) != results.length) {
+                    throw new IOException("Truncated table in " + file);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt table in " + file, e);
+            } finally {
+                inflater.end();
+            }
+            return new Tablebase(codes, results);
+        }
+    }
+}
@@ -0,0 +1,392 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retrograde analysis of small material sets with two players left, using the same move rules as
+ * play: pawns move in their owner's direction and become GENERALs on their owner's promotion
+ * squares, and a player left without a legal move (checkmate or stalemate) is eliminated, which
+ * ends the game.
+ *
+ * Generation runs in passes over the whole index space, each split over a fork-join pool:
+ *
+ *  1. Every position is set up once. Unreachable ones (overlapping pieces, a pawn on its promotion
+ *     squares, the player who just moved in check) are marked, positions without a legal move are
+ *     losses, and captures and promotions are looked up in the smaller tables they lead to, which
+ *     are generated first. What is left is the number of moves still to be decided.
+ *  2. Each newly decided position is un-moved to its predecessors in the same table: a loss makes
+ *     every predecessor a win, a win takes one from each predecessor's count and a count reaching
+ *     zero is a loss. Repeated until a pass decides nothing new.
+ *  3. Whatever is still undecided is a draw.
+ *
+ * Usage: java TablebaseGenerator DIR SET... [--threads N]    e.g. KsRu>sKf
+ */
+public class TablebaseGenerator {
+    private static final VarHandle BYTES = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final int SPLIT = 1 << 12; // Positions per leaf task
+
+    // Generation states; the result codes of Tablebase plus unknown and unreachable
+    private static final byte UNKNOWN = 0;
+    private static final byte INVALID = 4;
+    private static final int RESULT = 7;
+    private static final int FRESH = 8; // Decided in the last pass; two flags by pass parity
+
+    private static final int PAWN = PieceType.PAWN.ordinal();
+    private static final int GENERAL = PieceType.GENERAL.ordinal();
+    private static final int KING = PieceType.KING.ordinal();
+
+    // Squares a pawn can be pushed from onto each square, by owner
+    private static final long[][] PAWN_ORIGINS = new long[Position.PLAYER_COUNT][Position.SQUARES];
+
+    static {
+        for (int owner = 0; owner < Position.PLAYER_COUNT; owner++) {
+            for (int from = 0; from < Position.SQUARES; from++) {
+                if ((Attacks.PROMOTION[owner] & (1L << from)) != 0) continue;
+                long pushes = Attacks.PAWN_PUSH[owner][from];
+                while (pushes != 0) {
+                    int to = Long.numberOfTrailingZeros(pushes);
+                    pushes &= pushes - 1;
+                    PAWN_ORIGINS[owner][to] |= 1L << from;
+                }
+            }
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final Tablebases tables;
+    private Path directory;
+
+    /**
+     * @param tables finished tables; generated ones are added to it
+     */
+    public TablebaseGenerator(ForkJoinPool pool, Tablebases tables) {
+        this.pool = pool;
+        this.tables = tables;
+    }
+
+    /**
+     * Save every generated table, including dependencies, to a directory
+     */
+    public void setDirectory(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Generate a material set after the smaller sets its captures and promotions lead to, skipping
+     * any already known
+     * @throws IllegalArgumentException if the set is not one Tablebase.normalize accepts
+     */
+    public Tablebase generate(int[] pieces) throws IOException {
+        int[] codes = Tablebase.normalize(pieces);
+        Tablebase existing = tables.get(Tablebase.signature(codes));
+        if (existing != null) {
+            return existing;
+        }
+
+        for (int i = 0; i < codes.length; i++) {
+            int type = Position.typeOf(codes[i]);
+            if (type != KING) {
+                int[] captured = new int[codes.length - 1];
+                System.arraycopy(codes, 0, captured, 0, i);
+                System.arraycopy(codes, i + 1, captured, i, codes.length - i - 1);
+                generate(captured);
+            }
+            if (type == PAWN) {
+                int[] promoted = codes.clone();
+                promoted[i] = Position.encode(GENERAL, Position.ownerOf(codes[i]), Position.controllerOf(codes[i]));
+                generate(promoted);
+            }
+        }
+
+        long start = System.nanoTime();
+        Tablebase table = new Job(codes).run();
+        tables.add(table);
+        long[] counts = table.count();
+        System.out.printf("%-16s %,12d wins %,12d losses %,12d draws in %d ms%n", table.getName(),
+                counts[Tablebase.WIN], counts[Tablebase.LOSS], counts[Tablebase.DRAW], (System.nanoTime() - start) / 1_000_000);
+        if (directory != null) {
+            table.save(directory.resolve(Tablebase.fileName(codes)));
+        }
+        return table;
+    }
+
+    /**
+     * Generation state for one material set
+     */
+    private class Job {
+        private final int[] codes;
+        private final int pieces;
+        private final int[] players = new int[2];
+        private final byte[] state;
+        private final byte[] remaining; // Undecided moves, unsigned
+        private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+        private final LongAdder decided = new LongAdder();
+        private final Tablebase table; // For index calculations only; holds no results
+
+        Job(int[] codes) {
+            this.codes = codes;
+            this.pieces = codes.length;
+            int size = Tablebase.size(pieces);
+            this.state = new byte[size];
+            this.remaining = new byte[size];
+            this.table = new Tablebase(codes, new byte[0]);
+            players[0] = table.getPlayer(0);
+            players[1] = table.getPlayer(1);
+        }
+
+        Tablebase run() {
+            int size = state.length;
+            pool.invoke(new Pass(0, size, -1));
+            for (int pass = 0; decided.sumThenReset() > 0; pass++) {
+                pool.invoke(new Pass(0, size, pass));
+            }
+
+            byte[] results = new byte[size / 4];
+            for (int i = 0; i < size; i++) {
+                int result = state[i] & RESULT;
+                if (result == UNKNOWN) {
+                    result = Tablebase.DRAW;
+                } else if (result == INVALID) {
+                    result = Tablebase.NONE;
+                }
+                results[i >>> 2] |= (byte) (result << ((i & 3) << 1));
+            }
+            return new Tablebase(codes, results);
+        }
+
+        /**
+         * Classify a position from its moves, or mark it unreachable
+         */
+        void initialize(Worker worker, int index) {
+            if (!worker.load(index)) {
+                state[index] = INVALID;
+                return;
+            }
+            Position position = worker.position;
+            int side = position.getSideToMove();
+            int other = players[0] == side ? players[1] : players[0];
+            if (MoveGenerator.isInCheck(position, other)) {
+                state[index] = INVALID;
+                return;
+            }
+
+            int count = MoveGenerator.generateLegal(position, side, worker.moves);
+            int undecided = 0;
+            for (int i = 0; i < count; i++) {
+                int move = worker.moves[i];
+                if ((move & (Move.CAPTURE | Move.PROMOTION)) == 0) {
+                    undecided++;
+                    continue;
+                }
+                position.make(move);
+                int result = tables.probe(position, other);
+                position.unmake();
+                if (result == Tablebase.LOSS) {
+                    state[index] = Tablebase.WIN | FRESH;
+                    decided.increment();
+                    return;
+                }
+                if (result == Tablebase.DRAW) {
+                    undecided++; // Never counted down, so this position can no longer be lost
+                } else if (result != Tablebase.WIN) {
+                    throw new IllegalStateException("No table for a capture or promotion from " + table.getName());
+                }
+            }
+            if (undecided == 0) {
+                state[index] = Tablebase.LOSS | FRESH;
+                decided.increment();
+            } else {
+                remaining[index] = (byte) undecided;
+            }
+        }
+
+        /**
+         * Pass a newly decided result back to the positions one move earlier
+         */
+        void propagate(Worker worker, int index, int fresh, int next) {
+            int value = state[index];
+            if ((value & fresh) == 0) {
+                return;
+            }
+            int result = value & RESULT;
+            state[index] = (byte) result;
+            worker.load(index);
+
+            Position position = worker.position;
+            int side = position.getSideToMove();
+            int mover = players[0] == side ? players[1] : players[0];
+            long occupied = position.getOccupied();
+            long own = position.getOccupancy(mover);
+            while (own != 0) {
+                int to = Long.numberOfTrailingZeros(own);
+                own &= own - 1;
+                int code = position.pieceAt(to);
+                long origins = origins(code, to, occupied) & ~occupied;
+                while (origins != 0) {
+                    int from = Long.numberOfTrailingZeros(origins);
+                    origins &= origins - 1;
+
+                    position.remove(to);
+                    position.put(from, code);
+                    int parent = table.index(position, mover);
+                    position.remove(from);
+                    position.put(to, code);
+
+                    if (state[parent] != UNKNOWN) continue;
+                    if (result == Tablebase.LOSS) {
+                        if (BYTES.compareAndSet(state, parent, UNKNOWN, (byte) (Tablebase.WIN | next))) {
+                            decided.increment();
+                        }
+                    } else if (countDown(parent)) {
+                        if (BYTES.compareAndSet(state, parent, UNKNOWN, (byte) (Tablebase.LOSS | next))) {
+                            decided.increment();
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Take one undecided move off a position
+         * @return true if that was its last one
+         */
+        boolean countDown(int index) {
+            // Decremented with the same byte compare-and-set that claims states, so the generator
+            // relies on a single atomic operation on its byte arrays
+            byte count;
+            do {
+                count = (byte) BYTES.getVolatile(remaining, index);
+            } while (!BYTES.compareAndSet(remaining, index, count, (byte) (count - 1)));
+            return count == 1;
+        }
+
+        /**
+         * Squares a piece standing on a square could have moved from without capturing
+         */
+        long origins(int code, int square, long occupied) {
+            switch (Position.TYPES[Position.typeOf(code)]) {
+                case KING: return Attacks.KING[square];
+                case ROOK: return RookAttacks.attacks(square, occupied);
+                case ELEPHANT: return Attacks.ELEPHANT[square];
+                case KNIGHT: return Attacks.KNIGHT[square];
+                case PAWN: return PAWN_ORIGINS[Position.ownerOf(code)][square];
+                case GENERAL: return Attacks.GENERAL[square];
+            }
+            return 0L;
+        }
+
+        /**
+         * One pass over a range of indexes: setup when pass is -1, otherwise propagation of the
+         * positions decided in the previous pass
+         */
+        private class Pass extends RecursiveAction {
+            private final int from;
+            private final int to;
+            private final int pass;
+
+            Pass(int from, int to, int pass) {
+                this.from = from;
+                this.to = to;
+                this.pass = pass;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from > SPLIT) {
+                    int mid = (from + to) >>> 1;
+                    invokeAll(new Pass(from, mid, pass), new Pass(mid, to, pass));
+                    return;
+                }
+                Worker worker = workers.get();
+                if (pass < 0) {
+                    for (int i = from; i < to; i++) {
+                        initialize(worker, i);
+                    }
+                } else {
+                    int fresh = FRESH << (pass & 1);
+                    int next = FRESH << ((pass + 1) & 1);
+                    for (int i = from; i < to; i++) {
+                        propagate(worker, i, fresh, next);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Per-thread board and buffers
+         */
+        private class Worker {
+            final Position position = new Position(4);
+            final int[] moves = new int[MoveGenerator.MAX_MOVES];
+            private final int[] placed = new int[Tablebase.MAX_PIECES];
+            private int placedCount;
+
+            Worker() {
+                position.setEliminated(Position.ALL_PLAYERS & ~(1 << players[0]) & ~(1 << players[1]));
+            }
+
+            /**
+             * Set up the position of an index
+             * @return false if the index does not describe a possible placement
+             */
+            boolean load(int index) {
+                for (int i = 0; i < placedCount; i++) {
+                    position.remove(placed[i]);
+                }
+                placedCount = 0;
+                int previous = -1;
+                for (int i = 0; i < pieces; i++) {
+                    int square = (index >>> (6 * i)) & 63;
+                    int code = codes[i];
+                    if (position.pieceAt(square) != Position.EMPTY
+                            || (i > 0 && codes[i - 1] == code && square < previous)
+                            || (Position.typeOf(code) == PAWN && (Attacks.PROMOTION[Position.ownerOf(code)] & (1L << square)) != 0)) {
+                        return false;
+                    }
+                    position.put(square, code);
+                    placed[placedCount++] = square;
+                    previous = square;
+                }
+                position.setSideToMove(players[index >>> (6 * pieces)]);
+                return true;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TablebaseGenerator DIR SET... [--threads N]");
+            System.exit(1);
+        }
+        Path directory = Path.of(args[0]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        String[] sets = new String[args.length];
+        int setCount = 0;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                sets[setCount++] = args[i];
+            }
+        }
+
+        Files.createDirectories(directory);
+        Tablebases tables = Tablebases.load(directory);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            TablebaseGenerator generator = new TablebaseGenerator(pool, tables);
+            generator.setDirectory(directory);
+            for (String set : Arrays.copyOf(sets, setCount)) {
+                generator.generate(PositionCodec.parsePieces(set));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
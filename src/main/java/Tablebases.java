@@ -0,0 +1,60 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
+
+/**
+ * The tablebases available to a game or an engine, looked up by the material on the board. Probing
+ * reads shared immutable tables, so one instance can serve every thread.
+ */
+public class Tablebases {
+    private final Map<Long, Tablebase> tables = new ConcurrentHashMap<>();
+
+    public void add(Tablebase table) {
+        tables.put(table.getSignature(), table);
+    }
+
+    public Tablebase get(long signature) {
+        return tables.get(signature);
+    }
+
+    public Collection<Tablebase> getTables() {
+        return tables.values();
+    }
+
+    /**
+     * Load every table file in a directory
+     */
+    public static Tablebases load(Path directory) throws IOException {
+        Tablebases tablebases = new Tablebases();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.fstb")) {
+            for (Path file : files) {
+                tablebases.add(Tablebase.load(file));
+            }
+        }
+        return tablebases;
+    }
+
+    /**
+     * Result for the side to move
+     * @return Tablebase.WIN, LOSS or DRAW, or Tablebase.NONE if no table covers the position
+     */
+    public int probe(Position position) {
+        return probe(position, position.getSideToMove());
+    }
+
+    /**
+     * Result for a given player to move, e.g. the opponent right after Position.make
+     */
+    public int probe(Position position, int sideToMove) {
+        long signature = Tablebase.signature(position);
+        if (signature == 0L) {
+            return Tablebase.NONE;
+        }
+        Tablebase table = tables.get(signature);
+        return table != null ? table.probe(position, sideToMove) : Tablebase.NONE;
+    }
+}
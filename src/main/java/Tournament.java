@@ -0,0 +1,436 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless self-play tournament: engine settings are rotated over the four seats and games are
+ * scheduled on a thread pool. Moves are applied with RulesEngine, the rules core behind GameController
+ * (checkmate and stalemate elimination with army transfer to the mover, eliminated players skipped,
+ * repetition and move-limit draws).
+ *
+ * Usage: java Tournament [--games N] [--threads N] [--engine ALG[:depth[:timeMs]]]... [--hash MB]
+ *                        [--random-plies N] [--max-plies N] [--seed S] [--out FILE] [--record FILE]
+ *                        [--book FILE] [--tablebases DIR] [--repetitions N] [--move-limit N]
+ */
+public class Tournament {
+    private final List<EngineConfig> engines;
+    private final int randomPlies;
+    private final int maxPlies;
+    private final int hashMb;
+    private final long seed;
+    private final ThreadLocal<SearchEngine[]> workerEngines;
+    private GameRecordWriter recordWriter;
+    private OpeningBook book;
+    private Tablebases tablebases;
+    private int repetitionLimit = PositionHistory.DEFAULT_REPETITIONS;
+    private int moveLimit = PositionHistory.DEFAULT_MOVE_LIMIT;
+
+    public Tournament(List<EngineConfig> engines, int randomPlies, int maxPlies, int hashMb, long seed) {
+        this.engines = engines;
+        this.randomPlies = randomPlies;
+        this.maxPlies = maxPlies;
+        this.hashMb = hashMb;
+        this.seed = seed;
+        // Engines keep their buffers and table between the games a worker plays
+        this.workerEngines = ThreadLocal.withInitial(() -> {
+            SearchEngine[] created = new SearchEngine[engines.size()];
+            for (int i = 0; i < created.length; i++) {
+                created[i] = new SearchEngine(engines.get(i).getAlgorithm(), new TranspositionTable(hashMb));
+                created[i].setTablebases(tablebases);
+            }
+            return created;
+        });
+    }
+
+    /**
+     * Append every finished or abandoned game to an archive, or stop recording with null
+     */
+    public void setRecordWriter(GameRecordWriter recordWriter) {
+        this.recordWriter = recordWriter;
+    }
+
+    /**
+     * Play book moves, when there are any, after the random plies instead of searching
+     */
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    /**
+     * Let the engines score endgames from tablebases; set before the first game
+     */
+    public void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+
+    /**
+     * Draw rules for every game, see PositionHistory.setDrawRules; 0 turns a rule off
+     */
+    public void setDrawRules(int repetitions, int moveLimit) {
+        this.repetitionLimit = repetitions;
+        this.moveLimit = moveLimit;
+    }
+
+    /**
+     * Play games on a fixed pool of worker threads and collect the statistics
+     */
+    public Statistics run(int games, int threads) throws InterruptedException {
+        Statistics statistics = new Statistics(engines);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> pending = new ArrayList<>(games);
+            for (int i = 0; i < games; i++) {
+                int game = i;
+                pending.add(pool.submit(() -> {
+                    statistics.record(play(game));
+                    return null;
+                }));
+            }
+            for (Future<?> future : pending) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Game failed", e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        return statistics;
+    }
+
+    /**
+     * Play one game; the seat of each engine setting and the opening moves depend on the game number
+     */
+    public GameResult play(int game) throws IOException {
+        SearchEngine[] searchers = workerEngines.get();
+        int[] seats = new int[Position.PLAYER_COUNT]; // Engine setting per player
+        for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+            seats[p] = (p + game) % engines.size();
+        }
+
+        Random random = new Random(seed + game);
+        RulesEngine rules = new RulesEngine();
+        rules.getHistory().setDrawRules(repetitionLimit, moveLimit);
+        Position position = rules.getPosition();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        GameResult result = new GameResult(seats);
+        GameRecord record = recordWriter != null ? new GameRecord(seed << 32 | game, PositionSnapshot.of(position)) : null;
+
+        int plies = 0;
+        while (!rules.isGameOver() && plies < maxPlies) {
+            int mover = position.getSideToMove();
+            int count = rules.generateLegalMoves(moves);
+            if (count == 0) {
+                // A later elimination in the same turn can leave the next player without a move;
+                // GameController would wait forever, so score it as unfinished
+                break;
+            }
+            int move = Move.NONE;
+            if (plies < randomPlies) {
+                move = moves[random.nextInt(count)];
+            } else if (book != null) {
+                move = book.choose(rules, random);
+            }
+            if (move == Move.NONE) {
+                EngineConfig config = engines.get(seats[mover]);
+                move = searchers[seats[mover]].search(position, config.getLimits(), rules.getHistory()).getBestMove();
+            }
+
+            int events = rules.applyMove(move);
+            plies++;
+            if (record != null) {
+                record.addMove(move);
+            }
+            // Eliminations happen in turn order after the mover
+            for (int i = 1; i < Position.PLAYER_COUNT; i++) {
+                int player = (mover + i) % Position.PLAYER_COUNT;
+                if ((GameEvent.eliminated(events) & (1 << player)) != 0) {
+                    result.eliminate(player, mover);
+                    if (record != null) {
+                        record.addElimination(player, mover, (GameEvent.checkmated(events) & (1 << player)) != 0);
+                    }
+                }
+            }
+        }
+
+        result.finish(position, plies, rules.isDraw());
+        if (record != null) {
+            if (result.getWinner() >= 0) {
+                record.addGameOver(result.getWinner());
+            } else if (result.isDrawn()) {
+                record.addDraw();
+            }
+            recordWriter.append(record);
+        }
+        return result;
+    }
+
+    /**
+     * One engine setting: search algorithm and per-move limits
+     */
+    public static class EngineConfig {
+        private final SearchAlgorithm algorithm;
+        private final SearchLimits limits;
+
+        public EngineConfig(SearchAlgorithm algorithm, SearchLimits limits) {
+            this.algorithm = algorithm;
+            this.limits = limits;
+        }
+
+        /**
+         * Parse ALG[:depth[:timeMs]], for example PARANOID:3 or BRS:0:50
+         */
+        public static EngineConfig parse(String text) {
+            String[] parts = text.split(":");
+            int depth = parts.length > 1 ? Integer.parseInt(parts[1]) : 3;
+            long time = parts.length > 2 ? Long.parseLong(parts[2]) : 0;
+            return new EngineConfig(SearchAlgorithm.valueOf(parts[0]), new SearchLimits(depth, time, 0));
+        }
+
+        public SearchAlgorithm getAlgorithm() {
+            return algorithm;
+        }
+
+        public SearchLimits getLimits() {
+            return limits;
+        }
+
+        @Override
+        public String toString() {
+            return algorithm + ":" + limits.getMaxDepth() + (limits.getTimeMillis() > 0 ? ":" + limits.getTimeMillis() : "");
+        }
+    }
+
+    /**
+     * Outcome of one game, by player ordinal
+     */
+    public static class GameResult {
+        private final int[] seats;
+        private final int[] eliminatedBy = {-1, -1, -1, -1};
+        private final int[] finish = new int[Position.PLAYER_COUNT]; // 1 for the winner, 0 if unfinished
+        private int eliminations;
+        private int winner = -1;
+        private boolean drawn;
+        private int plies;
+
+        GameResult(int[] seats) {
+            this.seats = seats;
+        }
+
+        void eliminate(int player, int victor) {
+            eliminatedBy[player] = victor;
+            finish[player] = Position.PLAYER_COUNT - eliminations++;
+        }
+
+        void finish(Position position, int plies, boolean drawn) {
+            this.plies = plies;
+            this.drawn = drawn;
+            if (Rules.isGameOver(position)) {
+                for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+                    if (!position.isEliminated(p)) {
+                        winner = p;
+                        finish[p] = 1;
+                    }
+                }
+            }
+        }
+
+        public int getSeat(int player) {
+            return seats[player];
+        }
+
+        /**
+         * @return the last player standing, or -1 if the game was drawn or did not finish
+         */
+        public int getWinner() {
+            return winner;
+        }
+
+        /**
+         * @return true if the game ended by repetition or the move limit
+         */
+        public boolean isDrawn() {
+            return drawn;
+        }
+
+        public int getEliminatedBy(int player) {
+            return eliminatedBy[player];
+        }
+
+        public int getPlies() {
+            return plies;
+        }
+    }
+
+    /**
+     * Aggregate results by engine setting; record may be called from any worker thread
+     */
+    public static class Statistics {
+        private final List<EngineConfig> engines;
+        private final long[] seatsPlayed;
+        private final long[] wins;
+        private final long[] eliminated;
+        private final long[] eliminationsMade;
+        private final long[] finishTotal; // Sum of finishing places in completed games
+        private final long[] finishCount;
+        private final long[] winsBySeat = new long[Position.PLAYER_COUNT];
+        private long games;
+        private long drawn;
+        private long unfinished;
+        private long totalPlies;
+        private int minPlies = Integer.MAX_VALUE;
+        private int maxPlies;
+
+        Statistics(List<EngineConfig> engines) {
+            this.engines = engines;
+            int n = engines.size();
+            seatsPlayed = new long[n];
+            wins = new long[n];
+            eliminated = new long[n];
+            eliminationsMade = new long[n];
+            finishTotal = new long[n];
+            finishCount = new long[n];
+        }
+
+        public synchronized void record(GameResult result) {
+            games++;
+            totalPlies += result.plies;
+            minPlies = Math.min(minPlies, result.plies);
+            maxPlies = Math.max(maxPlies, result.plies);
+            if (result.drawn) {
+                drawn++;
+            } else if (result.winner < 0) {
+                unfinished++;
+            } else {
+                winsBySeat[result.winner]++;
+            }
+
+            for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+                int engine = result.seats[p];
+                seatsPlayed[engine]++;
+                if (result.winner == p) {
+                    wins[engine]++;
+                }
+                if (result.eliminatedBy[p] >= 0) {
+                    eliminated[engine]++;
+                    eliminationsMade[result.seats[result.eliminatedBy[p]]]++;
+                }
+                if (result.winner >= 0) {
+                    finishTotal[engine] += result.finish[p];
+                    finishCount[engine]++;
+                }
+            }
+        }
+
+        public synchronized void print(PrintWriter out) {
+            out.printf("Games: %d (%d drawn, %d unfinished)%n", games, drawn, unfinished);
+            out.printf("Length: avg %.1f plies, min %d, max %d%n", games > 0 ? (double) totalPlies / games : 0.0,
+                    games > 0 ? minPlies : 0, maxPlies);
+            out.print("Wins by player:");
+            for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+                out.print(" " + Position.PLAYERS[p] + " " + winsBySeat[p]);
+            }
+            out.println();
+            out.println();
+
+            out.printf("%-20s %8s %8s %7s %11s %11s %10s%n",
+                    "engine", "seats", "wins", "win%", "eliminated", "eliminates", "avg place");
+            for (int i = 0; i < engines.size(); i++) {
+                out.printf("%-20s %8d %8d %6.1f%% %11d %11d %10.2f%n", i + " " + engines.get(i), seatsPlayed[i], wins[i],
+                        seatsPlayed[i] > 0 ? 100.0 * wins[i] / seatsPlayed[i] : 0.0, eliminated[i], eliminationsMade[i],
+                        finishCount[i] > 0 ? (double) finishTotal[i] / finishCount[i] : 0.0);
+            }
+            out.flush();
+        }
+
+        @Override
+        public String toString() {
+            StringWriter text = new StringWriter();
+            print(new PrintWriter(text));
+            return text.toString();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int games = 100;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<EngineConfig> engines = new ArrayList<>();
+        int hashMb = 4;
+        int randomPlies = 4;
+        int maxPlies = 400;
+        long seed = 1;
+        String out = null;
+        String recordFile = null;
+        String bookFile = null;
+        String tablebaseDirectory = null;
+        int repetitions = PositionHistory.DEFAULT_REPETITIONS;
+        int moveLimit = PositionHistory.DEFAULT_MOVE_LIMIT;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--games": games = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--engine": engines.add(EngineConfig.parse(args[++i])); break;
+                case "--hash": hashMb = Integer.parseInt(args[++i]); break;
+                case "--random-plies": randomPlies = Integer.parseInt(args[++i]); break;
+                case "--max-plies": maxPlies = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--out": out = args[++i]; break;
+                case "--record": recordFile = args[++i]; break;
+                case "--book": bookFile = args[++i]; break;
+                case "--tablebases": tablebaseDirectory = args[++i]; break;
+                case "--repetitions": repetitions = Integer.parseInt(args[++i]); break;
+                case "--move-limit": moveLimit = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (engines.isEmpty()) {
+            engines.add(EngineConfig.parse("PARANOID:3"));
+            engines.add(EngineConfig.parse("BRS:3"));
+        }
+
+        Tournament tournament = new Tournament(engines, randomPlies, maxPlies, hashMb, seed);
+        tournament.setDrawRules(repetitions, moveLimit);
+        GameRecordWriter writer = recordFile != null ? new GameRecordWriter(Path.of(recordFile)) : null;
+        tournament.setRecordWriter(writer);
+        OpeningBook book = bookFile != null ? new OpeningBook(Path.of(bookFile)) : null;
+        tournament.setOpeningBook(book);
+        if (tablebaseDirectory != null) {
+            tournament.setTablebases(Tablebases.load(Path.of(tablebaseDirectory)));
+        }
+        long start = System.nanoTime();
+        Statistics statistics;
+        try {
+            statistics = tournament.run(games, threads);
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+            if (book != null) {
+                book.close();
+            }
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+        PrintWriter console = new PrintWriter(System.out);
+        statistics.print(console);
+        console.println("Time: " + elapsed + " ms on " + threads + " threads");
+        console.flush();
+        if (out != null) {
+            try (PrintWriter file = new PrintWriter(new FileWriter(out))) {
+                statistics.print(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+import java.util.Arrays;
+
+/**
+ * Fixed-size transposition table in a flat long[], shared by any number of searching threads
+ * without locks. Each entry is three words: a check word holding the key XORed with the two data
+ * words, the score vector, and the move/depth/bound/age word. A reader that races a writer sees a
+ * check word that no longer matches and treats the entry as a miss.
+ *
+ * Entries live in buckets of two. A new entry replaces the bucket slot with the same key, otherwise
+ * the slot left by an older search or, failing that, the shallower one.
+ */
+public class TranspositionTable {
+    public static final int BOUND_NONE = 0;
+    public static final int BOUND_UPPER = 1;
+    public static final int BOUND_LOWER = 2;
+    public static final int BOUND_EXACT = 3;
+
+    private static final int WORDS_PER_ENTRY = 3;
+    private static final int ENTRIES_PER_BUCKET = 2;
+    private static final int WORDS_PER_BUCKET = WORDS_PER_ENTRY * ENTRIES_PER_BUCKET;
+    private static final int SCORE_LIMIT = Short.MAX_VALUE - 1; // Larger scores are stored as a win or loss
+
+    private final long[] table;
+    private final int bucketMask;
+    private volatile int age;
+
+    public TranspositionTable(int sizeMb) {
+        long buckets = Math.max(1L, (long) sizeMb * 1024 * 1024 / (WORDS_PER_BUCKET * Long.BYTES));
+        int count = Integer.highestOneBit((int) Math.min(buckets, 1 << 26));
+        table = new long[count * WORDS_PER_BUCKET];
+        bucketMask = count - 1;
+    }
+
+    /**
+     * Start a new search generation; entries from older generations become preferred victims
+     */
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+    }
+
+    /**
+     * Look up a key
+     * @param scores receives the stored score vector on a hit
+     * @return the packed data word (see move/depth/bound accessors), or 0 on a miss
+     */
+    public long probe(long key, int[] scores) {
+        int base = ((int) key & bucketMask) * WORDS_PER_BUCKET;
+        for (int i = 0; i < ENTRIES_PER_BUCKET; i++) {
+            int slot = base + i * WORDS_PER_ENTRY;
+            long check = table[slot];
+            long packedScores = table[slot + 1];
+            long data = table[slot + 2];
+            if ((check ^ packedScores ^ data) == key && data != 0) {
+                unpackScores(packedScores, scores);
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    public void store(long key, int[] scores, int depth, int bound, int move) {
+        int base = ((int) key & bucketMask) * WORDS_PER_BUCKET;
+        int currentAge = age;
+
+        // Same key first, then the least valuable slot by age and depth
+        int victim = base;
+        int victimPriority = Integer.MAX_VALUE;
+        for (int i = 0; i < ENTRIES_PER_BUCKET; i++) {
+            int slot = base + i * WORDS_PER_ENTRY;
+            long data = table[slot + 2];
+            if ((table[slot] ^ table[slot + 1] ^ data) == key) {
+                if (depth < depth(data) && age(data) == currentAge && bound != BOUND_EXACT) {
+                    return; // Keep the deeper result from this search
+                }
+                if (move == Move.NONE) {
+                    move = move(data); // Keep the known best move
+                }
+                victim = slot;
+                break;
+            }
+            int priority = age(data) == currentAge ? depth(data) + 256 : depth(data);
+            if (data == 0) priority = -1;
+            if (priority < victimPriority) {
+                victim = slot;
+                victimPriority = priority;
+            }
+        }
+
+        long packedScores = packScores(scores);
+        long data = (move & 0xFFFFL) | ((long) (depth & 0xFF) << 16) | ((long) bound << 24)
+                | ((long) currentAge << 26) | (1L << 34); // Bit 34 keeps a stored word non-zero
+        table[victim + 1] = packedScores;
+        table[victim + 2] = data;
+        table[victim] = key ^ packedScores ^ data;
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0xFFFF);
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> 16) & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> 24) & 3);
+    }
+
+    private static int age(long data) {
+        return (int) ((data >>> 26) & 0xFF);
+    }
+
+    private static long packScores(int[] scores) {
+        long packed = 0L;
+        for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+            int score = scores[p];
+            int stored = score >= Evaluation.WIN ? Short.MAX_VALUE
+                    : score <= Evaluation.LOSS ? -Short.MAX_VALUE
+                    : Math.max(-SCORE_LIMIT, Math.min(SCORE_LIMIT, score));
+            packed |= (stored & 0xFFFFL) << (16 * p);
+        }
+        return packed;
+    }
+
+    private static void unpackScores(long packed, int[] scores) {
+        for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+            int stored = (short) (packed >>> (16 * p));
+            scores[p] = stored == Short.MAX_VALUE ? Evaluation.WIN
+                    : stored == -Short.MAX_VALUE ? Evaluation.LOSS
+                    : stored;
+        }
+    }
+
+    /**
+     * Approximate fill rate in permille, from a sample of the first buckets of the current search
+     */
+    public int hashfull() {
+        int sample = Math.min(1000, table.length / WORDS_PER_ENTRY);
+        int used = 0;
+        for (int i = 0; i < sample; i++) {
+            long data = table[i * WORDS_PER_ENTRY + 2];
+            if (data != 0 && age(data) == age) used++;
+        }
+        return sample == 0 ? 0 : used * 1000 / sample;
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Random keys for 64-bit Zobrist hashing of positions. Pieces are keyed by their full code, so a
+ * piece changing type (promotion) or controller (checkmate transfer) changes the hash.
+ */
+public final class Zobrist {
+    public static final long[][] PIECE = new long[128][Position.SQUARES]; // By piece code and square
+    public static final long[] SIDE = new long[Position.PLAYER_COUNT];
+    public static final long[] ELIMINATED = new long[Position.PLAYER_COUNT];
+    /** Search-only keys: results that depend on the algorithm and root player never share a table entry */
+    public static final long[][] SEARCH = new long[SearchAlgorithm.values().length][Position.PLAYER_COUNT];
+    public static final long BRS_OPPONENTS;
+
+    static {
+        long seed = 0x4F5E45A50C4E55L; // Fixed so keys are stable across runs and machines
+        for (int type = 0; type < Position.TYPE_COUNT; type++) {
+            for (int owner = 0; owner < Position.PLAYER_COUNT; owner++) {
+                for (int controller = 0; controller < Position.PLAYER_COUNT; controller++) {
+                    int code = Position.encode(type, owner, controller);
+                    for (int sq = 0; sq < Position.SQUARES; sq++) {
+                        seed += 0x9E3779B97F4A7C15L;
+                        PIECE[code][sq] = mix(seed);
+                    }
+                }
+            }
+        }
+        for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+            seed += 0x9E3779B97F4A7C15L;
+            SIDE[p] = mix(seed);
+            seed += 0x9E3779B97F4A7C15L;
+            ELIMINATED[p] = mix(seed);
+        }
+        for (int a = 0; a < SEARCH.length; a++) {
+            for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+                seed += 0x9E3779B97F4A7C15L;
+                SEARCH[a][p] = mix(seed);
+            }
+        }
+        seed += 0x9E3779B97F4A7C15L;
+        BRS_OPPONENTS = mix(seed);
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Key contribution of a set of eliminated players
+     */
+    public static long eliminated(int players) {
+        long key = 0L;
+        for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+            if ((players & (1 << p)) != 0) {
+                key ^= ELIMINATED[p];
+            }
+        }
+        return key;
+    }
+
+    static long mix(long z) {
+        // SplitMix64 finalizer
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
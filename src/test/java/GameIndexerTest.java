@@ -0,0 +1,43 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Entry lists read back in order whether they fit one run or spill several
+ */
+public class GameIndexerTest {
+    private static final int ENTRIES = 50_000;
+
+    @Test
+    public void spilledRunsMergeInOrder() throws IOException {
+        for (int runSize : new int[]{1, 7, 1000, ENTRIES, ENTRIES + 1}) {
+            Random random = new Random(runSize);
+            long[][] expected = new long[ENTRIES][];
+            try (GameIndexer.EntryList list = new GameIndexer.EntryList(runSize)) {
+                for (int i = 0; i < ENTRIES; i++) {
+                    // Negative keys sort after positive ones, and repeated keys sort by value
+                    long key = random.nextBoolean() ? random.nextLong() : random.nextInt(100) - 50;
+                    long value = random.nextInt(20) - 10;
+                    expected[i] = new long[]{key, value};
+                    list.add(key, value);
+                }
+                assertEquals(ENTRIES, list.size());
+                Arrays.sort(expected, (a, b) -> a[0] != b[0] ? Long.compareUnsigned(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+                list.sort();
+                for (int i = 0; i < ENTRIES; i++) {
+                    assertTrue(list.next(), "entry " + i + " with runs of " + runSize);
+                    assertEquals(expected[i][0], list.key(), "key " + i + " with runs of " + runSize);
+                    assertEquals(expected[i][1], list.value(), "value " + i + " with runs of " + runSize);
+                }
+                assertFalse(list.next());
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Records written with GameRecordWriter read back by GameRecordReader, whole, across window
+ * boundaries and up to a cut-off tail
+ */
+public class GameRecordTest {
+    private static final int GAMES = 20;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void recordsReadBack() throws IOException {
+        List<GameRecord> records = randomGames(new Random(3L));
+        Path archive = write(records);
+        try (GameRecordReader reader = new GameRecordReader(archive)) {
+            assertReads(reader, records, records.size());
+        }
+    }
+
+    @Test
+    public void recordsSpanWindows() throws IOException {
+        List<GameRecord> records = randomGames(new Random(5L));
+        Path archive = write(records);
+        // Windows smaller than most records, and sizes that do not divide the record lengths
+        for (long window : new long[]{16, 61, 100, 1000}) {
+            try (GameRecordReader reader = new GameRecordReader(archive, window)) {
+                assertReads(reader, records, records.size());
+            }
+        }
+    }
+
+    @Test
+    public void seekReturnsToRecord() throws IOException {
+        List<GameRecord> records = randomGames(new Random(9L));
+        Path archive = write(records);
+        try (GameRecordReader reader = new GameRecordReader(archive, 100)) {
+            long[] offsets = new long[records.size()];
+            for (int i = 0; i < records.size(); i++) {
+                assertTrue(reader.next());
+                offsets[i] = reader.getOffset();
+            }
+            for (int i = records.size() - 1; i >= 0; i--) {
+                assertTrue(reader.seek(offsets[i]));
+                assertRecord(records.get(i), reader);
+            }
+            reader.rewind();
+            assertReads(reader, records, records.size());
+        }
+    }
+
+    @Test
+    public void truncatedTailIsSkipped() throws IOException {
+        List<GameRecord> records = randomGames(new Random(11L));
+        byte[] data = Files.readAllBytes(write(records));
+        int last = records.get(records.size() - 1).getEncodedSize();
+        // Cut inside the last header, inside its start position and inside its entries
+        for (int cut : new int[]{1, last - 3, last - 8, last - GameRecord.HEADER_SIZE - 1, 2}) {
+            Path truncated = directory.resolve("truncated-" + cut);
+            Files.write(truncated, Arrays.copyOf(data, data.length - cut));
+            try (GameRecordReader reader = new GameRecordReader(truncated, 64)) {
+                assertReads(reader, records, records.size() - 1);
+            }
+        }
+    }
+
+    private Path write(List<GameRecord> records) throws IOException {
+        Path archive = directory.resolve("games-" + records.get(0).getId());
+        try (GameRecordWriter writer = new GameRecordWriter(archive)) {
+            for (GameRecord record : records) {
+                writer.append(record);
+            }
+        }
+        long size = 0;
+        for (GameRecord record : records) {
+            size += record.getEncodedSize();
+        }
+        assertEquals(size, Files.size(archive));
+        return archive;
+    }
+
+    /**
+     * The first count records must come back in order, then nothing
+     */
+    private static void assertReads(GameRecordReader reader, List<GameRecord> records, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            assertTrue(reader.next(), "record " + i);
+            assertRecord(records.get(i), reader);
+        }
+        assertFalse(reader.next());
+    }
+
+    private static void assertRecord(GameRecord expected, GameRecordReader reader) {
+        assertEquals(expected.getId(), reader.getId());
+        assertEquals(expected.getStart(), reader.getStart());
+        assertEquals(expected.getEntryCount(), reader.getEntryCount());
+        for (int i = 0; i < expected.getEntryCount(); i++) {
+            assertEquals(expected.getEntry(i), reader.getEntry(i), "entry " + i + " of game " + expected.getId());
+        }
+
+        // randomGames records the result last, if the game had one
+        int last = expected.getEntryCount() == 0 ? 0 : expected.getEntry(expected.getEntryCount() - 1);
+        int result = !GameRecord.isGameOver(last) ? GameRecordReader.UNFINISHED
+                : GameRecord.isDraw(last) ? GameRecordReader.DRAW : GameRecord.player(last);
+        assertEquals(result, reader.getResult(), "result of game " + expected.getId());
+    }
+
+    /**
+     * Random games recorded the way GameController does, some from later start positions
+     */
+    private static List<GameRecord> randomGames(Random random) {
+        List<GameRecord> records = new ArrayList<>();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (int game = 0; game < GAMES; game++) {
+            RulesEngine rules = new RulesEngine();
+            for (int ply = random.nextInt(3) * 20; ply > 0 && rules.generateLegalMoves(moves) > 0; ply--) {
+                rules.applyMove(moves[random.nextInt(rules.generateLegalMoves(moves))]);
+            }
+            rules.resetHistory();
+
+            GameRecord record = new GameRecord(random.nextLong(), PositionSnapshot.of(rules.getPosition()));
+            int count;
+            while ((count = rules.generateLegalMoves(moves)) > 0) {
+                int move = moves[random.nextInt(count)];
+                int mover = rules.getSideToMove();
+                int events = rules.applyMove(move);
+                record.addMove(move);
+                for (int p = 0; p < Position.PLAYER_COUNT; p++) {
+                    if ((GameEvent.eliminated(events) & (1 << p)) != 0) {
+                        record.addElimination(p, mover, (GameEvent.checkmated(events) & (1 << p)) != 0);
+                    }
+                }
+            }
+            if (rules.isDraw()) {
+                record.addDraw();
+            } else if (rules.getWinner() >= 0) {
+                record.addGameOver(rules.getWinner());
+            }
+            records.add(record);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,91 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The pin and check-mask legal generator against the make/test path it replaced: MoveValidator
+ * targets, kept only if the mover's king is not attacked afterwards, on seeded random games
+ */
+public class MoveGeneratorTest {
+    private static final int GAMES = 200;
+    private static final int MAX_PLIES = 300;
+
+    @Test
+    public void legalMovesMatchValidator() {
+        Random random = new Random(42L);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int positions = 0;
+
+        for (int game = 0; game < GAMES; game++) {
+            Board board = new Board();
+            new PieceSetup(board).setupInitialPieces();
+            RulesEngine rules = new RulesEngine(board.getPosition());
+            MoveValidator validator = new MoveValidator(board);
+
+            for (int ply = 0; ply < MAX_PLIES && !rules.isGameOver(); ply++) {
+                assertEquals(expectedMoves(board, validator), generatedMoves(rules.getPosition()),
+                        "game " + game + " ply " + ply);
+                positions++;
+
+                int count = rules.generateLegalMoves(moves);
+                if (count == 0) {
+                    break;
+                }
+                rules.applyMove(moves[random.nextInt(count)]);
+                board.syncFromPosition();
+            }
+        }
+        assertTrue(positions > GAMES, "too few positions: " + positions);
+    }
+
+    /**
+     * Moves of the side to move as MoveValidator sees them, filtered by make/test/unmake
+     */
+    private static Set<Integer> expectedMoves(Board board, MoveValidator validator) {
+        Position position = board.getPosition();
+        int side = position.getSideToMove();
+        int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        Set<Integer> expected = new TreeSet<>();
+        for (int sq = 0; sq < Position.SQUARES; sq++) {
+            int code = position.pieceAt(sq);
+            if (code == Position.EMPTY || Position.controllerOf(code) != side) continue;
+
+            Cell from = board.getCell(Position.row(sq), Position.col(sq));
+            for (Cell to : validator.getLegalMoves(from)) {
+                int move = findMove(position, sq, Position.square(to.getRow(), to.getCol()), buffer);
+                if (MoveGenerator.isLegal(position, move)) {
+                    expected.add(move);
+                }
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * The pseudo-legal move between two squares, with its capture and promotion flags
+     */
+    private static int findMove(Position position, int from, int to, int[] buffer) {
+        int count = MoveGenerator.generate(position, from, buffer, 0);
+        for (int i = 0; i < count; i++) {
+            if (Move.to(buffer[i]) == to) {
+                return buffer[i];
+            }
+        }
+        throw new AssertionError("MoveValidator target " + to + " not generated from " + from);
+    }
+
+    private static Set<Integer> generatedMoves(Position position) {
+        int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(position, position.getSideToMove(), buffer);
+        Set<Integer> generated = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            generated.add(buffer[i]);
+        }
+        return generated;
+    }
+}
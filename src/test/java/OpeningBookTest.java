@@ -0,0 +1,74 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * A book built from an archive of random games, read back whole and refused when cut short
+ */
+public class OpeningBookTest {
+    private static final int GAMES = 200;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void builtBookReadsBack() throws IOException {
+        Path book = buildBook();
+        try (OpeningBook opening = new OpeningBook(book)) {
+            assertTrue(opening.size() > 0);
+            assertEquals(OpeningBook.HEADER_SIZE + (long) opening.size() * OpeningBook.ENTRY_SIZE, Files.size(book));
+
+            RulesEngine rules = new RulesEngine();
+            int move = opening.choose(rules, new Random(1L));
+            assertNotEquals(Move.NONE, move);
+            assertTrue(rules.isLegal(move));
+        }
+    }
+
+    @Test
+    public void truncatedBookIsRefused() throws IOException {
+        byte[] data = Files.readAllBytes(buildBook());
+        for (int length : new int[]{0, OpeningBook.HEADER_SIZE - 1, OpeningBook.HEADER_SIZE, 100, data.length - 1}) {
+            Path truncated = directory.resolve("truncated-" + length + ".book");
+            Files.write(truncated, Arrays.copyOf(data, length));
+            assertThrows(IOException.class, () -> new OpeningBook(truncated).close(), length + " bytes");
+        }
+    }
+
+    private Path buildBook() throws IOException {
+        Random random = new Random(17L);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        Path archive = directory.resolve("games.fsgr");
+        Files.deleteIfExists(archive);
+        try (GameRecordWriter writer = new GameRecordWriter(archive)) {
+            for (int game = 0; game < GAMES; game++) {
+                RulesEngine rules = new RulesEngine();
+                GameRecord record = new GameRecord(game, PositionSnapshot.of(rules.getPosition()));
+                for (int ply = 0; ply < 2 * OpeningBook.DEFAULT_PLIES; ply++) {
+                    int count = rules.generateLegalMoves(moves);
+                    // Few choices, so openings repeat often enough to reach the book
+                    int move = moves[random.nextInt(Math.min(count, 2))];
+                    rules.applyMove(move);
+                    record.addMove(move);
+                }
+                writer.append(record);
+            }
+        }
+
+        Path book = directory.resolve("opening.book");
+        try (GameRecordReader reader = new GameRecordReader(archive)) {
+            OpeningBook.build(reader, OpeningBook.DEFAULT_PLIES, 2, book);
+        }
+        return book;
+    }
+}
@@ -0,0 +1,27 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Leaf counts from the initial setup against the checked-in reference counts
+ */
+public class PerftTest {
+    private static final int MAX_DEPTH = 5;
+
+    @Test
+    public void startPositionCounts() {
+        Perft perft = Perft.fromStartPosition();
+        for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+            assertEquals(Perft.START_POSITION_COUNTS[depth], perft.perft(depth), "perft(" + depth + ")");
+        }
+    }
+
+    @Test
+    public void cachedCountsMatch() {
+        Perft perft = Perft.fromStartPosition();
+        perft.setTable(new PerftTable(1));
+        for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+            assertEquals(Perft.START_POSITION_COUNTS[depth], perft.perft(depth), "perft(" + depth + ") with a table");
+        }
+    }
+}
@@ -0,0 +1,151 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Text and binary round trips of positions from random games and random piece placements
+ */
+public class PositionCodecTest {
+    private static final int GAMES = 100;
+    private static final int RANDOM_POSITIONS = 20_000;
+
+    @Test
+    public void encodedSize() {
+        assertEquals(41, PositionCodec.ENCODED_SIZE);
+        assertEquals(PositionCodec.ENCODED_SIZE, PositionCodec.encode(PositionSnapshot.of(PieceSetup.initialPosition())).length);
+    }
+
+    @Test
+    public void startPositionText() {
+        String text = "KuNuPu2PsNsKs/RuEuPu2PsEsRs/PuPu4PsPs/8/8/PfPf4PwPw/RfEfPf2PwEwRw/KfNfPf2PwNwKw s -";
+        assertEquals(text, PositionCodec.toText(PieceSetup.initialPosition()));
+        assertEquals(PositionSnapshot.of(PieceSetup.initialPosition()), PositionCodec.fromText(text));
+    }
+
+    @Test
+    public void gamePositionsRoundTrip() {
+        List<PositionSnapshot> positions = gamePositions(new Random(7L));
+        boolean eliminated = false;
+        boolean inherited = false;
+        for (PositionSnapshot position : positions) {
+            assertRoundTrips(position);
+            eliminated |= position.getEliminated() != 0;
+            for (int sq = 0; sq < Position.SQUARES; sq++) {
+                int code = position.pieceAt(sq);
+                inherited |= code != Position.EMPTY && Position.ownerOf(code) != Position.controllerOf(code);
+            }
+        }
+        assertTrue(eliminated, "no game eliminated a player");
+        assertTrue(inherited, "no game passed on an army");
+    }
+
+    @Test
+    public void randomPositionsRoundTrip() {
+        Random random = new Random(11L);
+        for (int i = 0; i < RANDOM_POSITIONS; i++) {
+            assertRoundTrips(randomPosition(random));
+        }
+    }
+
+    @Test
+    public void encodingsFollowEachOther() {
+        Random random = new Random(13L);
+        PositionSnapshot[] positions = new PositionSnapshot[100];
+        ByteBuffer buffer = ByteBuffer.allocate(positions.length * PositionCodec.ENCODED_SIZE);
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = randomPosition(random);
+            PositionCodec.encode(positions[i], buffer);
+            assertEquals((i + 1) * PositionCodec.ENCODED_SIZE, buffer.position());
+        }
+        buffer.flip();
+        for (PositionSnapshot position : positions) {
+            assertEquals(position, PositionCodec.decode(buffer));
+        }
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void malformedTextIsRejected() {
+        String[] texts = {
+                "",
+                "8/8/8/8/8/8/8/8 s",                 // No eliminated field
+                "8/8/8/8/8/8/8 s -",                 // Seven rows
+                "8/8/8/8/8/8/8/7 s -",               // Short row
+                "8/8/8/8/8/8/8/8Ks s -",             // Long row
+                "8/8/8/8/8/8/8/9 s -",               // Bad count
+                "Xs7/8/8/8/8/8/8/8 s -",             // Bad type
+                "Kx7/8/8/8/8/8/8/8 s -",             // Bad owner
+                "7Ks>/8/8/8/8/8/8/8 s -",            // Missing controller
+                "7K/8/8/8/8/8/8/8 s -",              // Missing owner
+                "8/8/8/8/8/8/8/8 x -",               // Bad side to move
+                "8/8/8/8/8/8/8/8 su -",              // Two sides to move
+                "8/8/8/8/8/8/8/8 s q",               // Bad eliminated player
+        };
+        for (String text : texts) {
+            assertThrows(IllegalArgumentException.class, () -> PositionCodec.fromText(text), text);
+        }
+    }
+
+    @Test
+    public void invalidBytesAreRejected() {
+        byte[] valid = PositionCodec.encode(PositionSnapshot.of(PieceSetup.initialPosition()));
+        int[] badCodes = {0, 7, 0x80, 0xFF}; // Empty, type 6 and codes outside seven bits
+        for (int code : badCodes) {
+            byte[] data = valid.clone();
+            data[Long.BYTES + 1] = (byte) code;
+            assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(data), "piece code " + code);
+        }
+
+        byte[] state = valid.clone();
+        state[Long.BYTES] = (byte) 0x40; // Bits above the eliminated set
+        assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(state));
+
+        byte[] crowded = valid.clone();
+        ByteBuffer.wrap(crowded).putLong(0, -1L); // 64 pieces
+        assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(crowded));
+    }
+
+    private static void assertRoundTrips(PositionSnapshot position) {
+        String text = PositionCodec.toText(position);
+        assertEquals(position, PositionCodec.fromText(text), text);
+        assertEquals(position, PositionCodec.decode(PositionCodec.encode(position)), text);
+    }
+
+    /**
+     * Every position of a few random games, which lose players and pass armies on
+     */
+    private static List<PositionSnapshot> gamePositions(Random random) {
+        List<PositionSnapshot> positions = new ArrayList<>();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (int game = 0; game < GAMES; game++) {
+            RulesEngine rules = new RulesEngine();
+            positions.add(PositionSnapshot.of(rules.getPosition()));
+            int count;
+            while ((count = rules.generateLegalMoves(moves)) > 0) {
+                rules.applyMove(moves[random.nextInt(count)]);
+                positions.add(PositionSnapshot.of(rules.getPosition()));
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Up to MAX_PIECES pieces of any type, owner and controller on random squares
+     */
+    private static PositionSnapshot randomPosition(Random random) {
+        byte[] squares = new byte[Position.SQUARES];
+        int pieces = random.nextInt(PositionCodec.MAX_PIECES + 1);
+        for (int i = 0; i < pieces; i++) {
+            squares[random.nextInt(Position.SQUARES)] = (byte) Position.encode(random.nextInt(Position.TYPE_COUNT),
+                    random.nextInt(Position.PLAYER_COUNT), random.nextInt(Position.PLAYER_COUNT));
+        }
+        return PositionSnapshot.of(squares, random.nextInt(Position.PLAYER_COUNT), random.nextInt(1 << Position.PLAYER_COUNT));
+    }
+}
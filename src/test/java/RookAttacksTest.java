@@ -0,0 +1,13 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Both rook lookup paths against the ray walker
+ */
+public class RookAttacksTest {
+    @Test
+    public void selfTest() {
+        assertEquals(0, RookAttacks.selfTest(100_000, 42L));
+    }
+}